@@ -0,0 +1,67 @@
+package com.sollace.yaml.conformance;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs checks that exercise the library through its public api and compare it against known good output.
+ *
+ * Arguments are the names of the checks to run, or none to run all of them.
+ * The process exits with 1 if any check fails.
+ */
+public class ConformanceSuite {
+    private static final Map<String, Check> CHECKS = new LinkedHashMap<>();
+    static {
+        CHECKS.put("fixtures", FixtureCheck::run);
+        CHECKS.put("quoted-scan", QuotedScanCheck::run);
+        CHECKS.put("transcoder", TranscoderCheck::run);
+        CHECKS.put("transcoder-heap", TranscoderHeapCheck::run);
+        CHECKS.put("document-round-trip", DocumentRoundTripCheck::run);
+        CHECKS.put("parallel-write", ParallelWriteCheck::run);
+        CHECKS.put("parallel-read", ParallelReadCheck::run);
+        CHECKS.put("index", IndexCheck::run);
+        CHECKS.put("limits", LimitsCheck::run);
+    }
+
+    public static void main(String[] args) {
+        int failures = 0;
+        for (var entry : CHECKS.entrySet()) {
+            if (args.length > 0 && !List.of(args).contains(entry.getKey())) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                entry.getValue().run();
+                System.out.println(String.format("PASS %-24s %6d ms", entry.getKey(), (System.nanoTime() - start) / 1_000_000));
+            } catch (Throwable t) {
+                failures++;
+                System.err.println("FAIL " + entry.getKey());
+                t.printStackTrace();
+            }
+        }
+        if (failures > 0) {
+            System.err.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+    }
+
+    static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    static void expectEqual(@Nullable Object expected, @Nullable Object actual, String message) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(message + "\n  expected: " + expected + "\n  actual:   " + actual);
+        }
+    }
+
+    private interface Check {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,135 @@
+package com.sollace.yaml.conformance;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.sollace.yaml.YamlDocument;
+import com.sollace.yaml.YamlReader;
+
+/**
+ * Compares every scalar YamlDocument finds against what YamlReader reads at the same path,
+ * then replaces each one in turn and checks that only that value changed when the edited text is read back.
+ */
+class DocumentRoundTripCheck {
+    private static final String[] DOCUMENTS = {
+            """
+            name: plain
+            desc: first line
+              continued
+              and again
+            after: 1
+            """,
+            """
+            desc: a
+
+              b after a blank line
+            quoted: "one # two"
+            commented: value # comment
+            continued: x
+              y # trailing comment
+            last: true
+            """,
+            """
+            list:
+              - a
+                b
+              - c
+            map:
+              k: a b
+                 c d
+              j: 2
+            """,
+            """
+            servers:
+              - host: example.com
+                port: 8080
+              - host: localhost
+                port: 80
+            nested:
+              deeper:
+                deepest: 1
+                  2
+            """,
+            """
+            top: first line
+            continued at column zero
+              and indented
+            after: 1
+            tagged: !!str 1
+            anchored: &a !!str true
+            """,
+    };
+
+    static void run() throws IOException {
+        for (String text : DOCUMENTS) {
+            JsonObject read = read(text);
+            YamlDocument document = YamlDocument.parse(text);
+            ConformanceSuite.expect(!document.paths().isEmpty(), "No scalars found in\n" + text);
+
+            for (String path : document.paths()) {
+                ConformanceSuite.expectEqual(at(read, path), document.get(path), "Value of " + path + " in\n" + text);
+            }
+
+            for (String path : document.paths()) {
+                YamlDocument edited = YamlDocument.parse(text);
+                edited.set(path, "edited " + path);
+                JsonObject reread = read(edited.toString());
+                for (String other : document.paths()) {
+                    @Nullable
+                    JsonElement expected = other.equals(path) ? new JsonPrimitive("edited " + path) : at(read, other);
+                    ConformanceSuite.expectEqual(expected, at(reread, other), "Value of " + other + " after setting " + path + " in\n" + edited);
+                }
+            }
+        }
+        save();
+    }
+
+    // edits that keep the length are written in place and others replace the file, but neither is written over a file changed since loading
+    private static void save() throws IOException {
+        Path file = Files.createTempFile("yaml-document", ".yaml");
+        try {
+            Files.writeString(file, "a: 1\nb: two\n");
+            YamlDocument document = YamlDocument.load(file);
+            document.set("a", 2);
+            ConformanceSuite.expect(document.save(), "Same length edit was not saved");
+            document.set("b", "three");
+            ConformanceSuite.expect(document.save(), "Longer edit was not saved");
+            ConformanceSuite.expectEqual("a: 2\nb: three\n", Files.readString(file), "Saved document");
+
+            Files.writeString(file, "a: 1\nb: changed elsewhere\n");
+            document.set("a", 3);
+            try {
+                document.save();
+                throw new AssertionError("Saved over a file changed since it was loaded");
+            } catch (IOException expected) {
+                ConformanceSuite.expectEqual("a: 1\nb: changed elsewhere\n", Files.readString(file), "Document changed since loading");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static JsonObject read(String text) throws IOException {
+        try (YamlReader reader = new YamlReader(new StringReader(text))) {
+            return reader.readDocument();
+        }
+    }
+
+    @Nullable
+    private static JsonElement at(JsonElement json, String path) {
+        for (String key : path.split("\\.")) {
+            if (json == null) {
+                return null;
+            }
+            json = json.isJsonArray() ? json.getAsJsonArray().get(Integer.parseInt(key)) : json.getAsJsonObject().get(key);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,73 @@
+package com.sollace.yaml.conformance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.sollace.yaml.CompactObject;
+import com.sollace.yaml.Transcoder;
+import com.sollace.yaml.YamlReader;
+
+/**
+ * Reads each fixture under /fixtures and compares it with the tree stored next to it,
+ * both as a gson tree with eager and lazy scalars, as a compact document and through the streaming transcoder.
+ * Compact documents must come out the same whether scalars are lazy or not, down to how each number is stored.
+ *
+ * The expected trees were produced by the recursive reader that the frame stack replaced.
+ * Quoted scalars are the exception, as their escapes and folding were fixed when they moved to being scanned from the buffer.
+ */
+class FixtureCheck {
+    private static final String[] FIXTURES = {
+            "anchors",
+            "block-scalars",
+            "deep-block",
+            "deep-flow",
+            "flow",
+            "quoted",
+            "sets",
+            "tags"
+    };
+
+    static void run() throws IOException {
+        for (String name : FIXTURES) {
+            JsonElement expected;
+            try (Reader in = open(name + ".json")) {
+                expected = JsonParser.parseReader(in);
+            }
+
+            for (boolean lazy : new boolean[] { false, true }) {
+                try (YamlReader reader = new YamlReader(open(name + ".yaml"))) {
+                    reader.setLazyScalars(lazy);
+                    ConformanceSuite.expectEqual(expected, reader.readDocument(), name + ".yaml read with lazy scalars " + lazy);
+                }
+            }
+
+            CompactObject[] compact = new CompactObject[2];
+            for (int i = 0; i < compact.length; i++) {
+                try (YamlReader reader = new YamlReader(open(name + ".yaml"))) {
+                    reader.setLazyScalars(i == 1);
+                    compact[i] = reader.readCompactDocument();
+                }
+            }
+            ConformanceSuite.expectEqual(expected, compact[0].toJson(), name + ".yaml read as a compact document");
+            ConformanceSuite.expectEqual(compact[0], compact[1], name + ".yaml read as a compact document with lazy scalars");
+
+            StringWriter json = new StringWriter();
+            Transcoder.yamlToJson(open(name + ".yaml"), json);
+            ConformanceSuite.expectEqual(expected, JsonParser.parseString(json.toString()), name + ".yaml transcoded to json");
+        }
+    }
+
+    private static Reader open(String file) throws IOException {
+        InputStream in = FixtureCheck.class.getResourceAsStream("/fixtures/" + file);
+        if (in == null) {
+            throw new IOException("Missing fixture " + file);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+}
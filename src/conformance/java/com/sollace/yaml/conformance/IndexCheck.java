@@ -0,0 +1,54 @@
+package com.sollace.yaml.conformance;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sollace.yaml.YamlIndex;
+import com.sollace.yaml.YamlReader;
+
+/**
+ * Indexes randomly generated documents and checks every top-level key reads back through the index
+ * the same as it does when the whole document is read. The documents put lines at column zero inside quoted strings,
+ * block scalars and flow collections, where the index must not start a new entry.
+ */
+class IndexCheck {
+    private static final long SEED = 0x5EED_0047L;
+    private static final int DOCUMENTS = 500;
+
+    static void run() throws IOException {
+        Random random = new Random(SEED);
+        Path directory = Files.createTempDirectory("yaml-index");
+        Path file = directory.resolve("document.yaml");
+        try {
+            check(file, "flow: [1,\n  2,\n3]\nafter: {x: 1,\ny: [2,\n3]}\nlast: true\n", "Multi-line flow collections");
+            for (int i = 0; i < DOCUMENTS; i++) {
+                check(file, ParallelReadCheck.generate(random, 5 + random.nextInt(30), true), "Document " + i);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(YamlIndex.sidecar(file));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void check(Path file, String text, String name) throws IOException {
+        JsonObject expected;
+        try (YamlReader reader = new YamlReader(new StringReader(text))) {
+            expected = reader.readDocument();
+        }
+        Files.writeString(file, text);
+        try (YamlIndex index = YamlIndex.build(file, 1)) {
+            ConformanceSuite.expectEqual(expected.keySet(), Set.copyOf(index.paths()), name + " indexed from\n" + text);
+            for (Map.Entry<String, JsonElement> entry : expected.entrySet()) {
+                ConformanceSuite.expectEqual(entry.getValue(), index.get(entry.getKey()), name + " read " + entry.getKey() + " through the index from\n" + text);
+            }
+        }
+    }
+}
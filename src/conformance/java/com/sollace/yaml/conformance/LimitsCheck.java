@@ -0,0 +1,31 @@
+package com.sollace.yaml.conformance;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import com.sollace.yaml.YamlLimits;
+import com.sollace.yaml.YamlReader;
+
+/**
+ * Reads documents that break each limit and checks they fail with the position where reading stopped.
+ */
+class LimitsCheck {
+    static void run() {
+        expectError("a: 1\nb: 2\nc: " + "x".repeat(100) + "\n", YamlLimits.DEFAULT.withMaxCharacters(50),
+                "Document exceeds the limit of 50 characters at line 3, column 41");
+        expectError("a: 1 # " + "c".repeat(100) + "\nb: 2\n", YamlLimits.DEFAULT.withMaxScalarLength(50),
+                "Comment exceeds the limit of 50 characters at line 1, column 6");
+        expectError("# " + "c".repeat(100) + "\nb: 2\n", YamlLimits.DEFAULT.withMaxScalarLength(50),
+                "Comment exceeds the limit of 50 characters at line 1, column 2");
+    }
+
+    private static void expectError(String text, YamlLimits limits, String message) {
+        try (YamlReader reader = new YamlReader(new StringReader(text))) {
+            reader.setLimits(limits);
+            reader.readDocument();
+            throw new AssertionError("Expected \"" + message + "\" reading\n" + text);
+        } catch (IOException e) {
+            ConformanceSuite.expectEqual(message, e.getMessage(), "Error reading\n" + text);
+        }
+    }
+}
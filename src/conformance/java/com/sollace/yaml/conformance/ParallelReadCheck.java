@@ -0,0 +1,133 @@
+package com.sollace.yaml.conformance;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.gson.JsonObject;
+import com.sollace.yaml.YamlParallelReader;
+import com.sollace.yaml.YamlReader;
+
+/**
+ * Reads randomly generated documents with YamlParallelReader and checks they come out the same as a single YamlReader reads them,
+ * or fail with the same error. The entries are picked to put lines at column zero inside quoted strings, block scalars and
+ * flow collections, where the pre-scan must not split, and some documents are broken part way through.
+ *
+ * Small documents are read on a pool wide enough that they are split at nearly every key, and larger ones with the default chunk size.
+ */
+class ParallelReadCheck {
+    private static final long SEED = 0x5EED_0048L;
+    private static final int SMALL_DOCUMENTS = 2_000;
+    private static final int LARGE_DOCUMENTS = 20;
+
+    static void run() throws IOException {
+        Random random = new Random(SEED);
+        ForkJoinPool narrow = new ForkJoinPool(2);
+        ForkJoinPool wide = new ForkJoinPool(64);
+        try {
+            for (int i = 0; i < SMALL_DOCUMENTS; i++) {
+                String text = generate(random, 5 + random.nextInt(40), false);
+                boolean lazy = random.nextBoolean();
+                compare(text, reader(wide, 1, lazy), lazy, "Small document " + i);
+            }
+            for (int i = 0; i < LARGE_DOCUMENTS; i++) {
+                String text = generate(random, 8_000 + random.nextInt(4_000), true);
+                boolean lazy = random.nextBoolean();
+                ConformanceSuite.expect(text.length() > 2 * 64 * 1024, "Large document " + i + " is too small to be split");
+                compare(text, reader(narrow, 64 * 1024, lazy), lazy, "Large document " + i);
+            }
+        } finally {
+            narrow.shutdown();
+            wide.shutdown();
+        }
+    }
+
+    private static YamlParallelReader reader(ForkJoinPool pool, int minChunkSize, boolean lazy) {
+        YamlParallelReader reader = new YamlParallelReader(pool);
+        reader.setMinChunkSize(minChunkSize);
+        reader.setLazyScalars(lazy);
+        return reader;
+    }
+
+    private static void compare(String text, YamlParallelReader parallel, boolean lazy, String name) {
+        String expected;
+        try (YamlReader reader = new YamlReader(new StringReader(text))) {
+            reader.setLazyScalars(lazy);
+            expected = describe(reader.readDocument());
+        } catch (IOException e) {
+            expected = "error: " + e.getMessage();
+        }
+
+        String actual;
+        try {
+            actual = describe(parallel.readDocument(text));
+        } catch (IOException e) {
+            actual = "error: " + e.getMessage();
+        }
+        ConformanceSuite.expectEqual(expected, actual, name + (lazy ? " with lazy scalars" : "") + " read in parallel from\n" + text);
+    }
+
+    // lazily read numbers only compare equal once parsed, so documents are compared by the json they write
+    private static String describe(JsonObject json) {
+        return json.toString();
+    }
+
+    /**
+     * Generates a document of top-level entries. Tame documents leave out aliases and broken entries,
+     * either of which would have a large document read sequentially or fail in its first part, and the blank line
+     * in block scalars that a single reader stops at, so that they are read to the end.
+     */
+    static String generate(Random random, int entries, boolean tame) {
+        StringBuilder text = new StringBuilder();
+        boolean anchored = false;
+        boolean commented = false;
+        for (int i = 0; i < entries; i++) {
+            // now and then a key repeats, which the later value replaces
+            String key = "k" + (random.nextInt(20) == 0 ? random.nextInt(i + 1) : i);
+            int kind = random.nextInt(tame ? 14 : 16);
+            if (kind == 10 && commented) {
+                // a single reader stops at the second of two comment lines in a row after most values, which the
+                // parallel reader can't know about once the comments fall in another part, so an entry goes between them
+                text.append(key).append("a: between\n");
+            }
+            commented = kind == 10 || (commented && kind == 11);
+            switch (kind) {
+                case 0 -> text.append(key).append(": plain value ").append(i).append('\n');
+                case 1 -> text.append(key).append(": ").append(random.nextInt(1000)).append(" # comment: not a key\n");
+                case 2 -> text.append(key).append(": \"quoted\n").append("k").append(i).append("x: inside the string \\\"\"\n");
+                case 3 -> text.append(key).append(": 'it''s\n").append("k").append(i).append("x: still quoted'\n");
+                case 4 -> text.append(key).append(": |\n  literal\n").append(tame ? "" : "\n").append("  k").append(i).append("x: text\n");
+                case 5 -> text.append(key).append(": >-\n  folded\n  lines\n");
+                case 6 -> text.append(key).append(":\n  nested: ").append(i).append("\n  list:\n    - a\n    - b: c\n");
+                case 7 -> text.append(key).append(":\n  - one\n  - name: two\n    size: ").append(i).append('\n');
+                case 8 -> text.append(key).append(": [a, \"b, ]\",\n").append("k").append(i).append("x: c]\n");
+                case 9 -> text.append(key).append(": {x: 1,\n  y: [2, 3], z: 'q'}\n");
+                case 10 -> text.append("# k").append(i).append("x: commented out\n");
+                case 11 -> text.append('\n');
+                case 12 -> text.append(key).append(": true\n").append(key).append("b: null\n");
+                case 13 -> text.append(key).append(": !!str ").append(i).append('\n');
+                case 14 -> {
+                    // anchors and aliases make the document read sequentially
+                    if (anchored && random.nextBoolean()) {
+                        text.append(key).append(": *a\n");
+                    } else {
+                        text.append(key).append(": &a\n  anchored: ").append(i).append('\n');
+                        anchored = true;
+                    }
+                }
+                default -> {
+                    // broken entries, where the parallel read must fail or stop the same way
+                    switch (random.nextInt(12)) {
+                        case 0 -> text.append(key).append(": [unclosed, \n");
+                        case 1 -> text.append(key).append(": \"unterminated\n");
+                        case 2 -> text.append(key).append(": \"bad \\q escape\"\n");
+                        case 3 -> text.append("...\n");
+                        default -> text.append(key).append(": ").append(random.nextInt()).append('\n');
+                    }
+                }
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.sollace.yaml.conformance;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.sollace.yaml.YamlWriter;
+
+/**
+ * Writes generated trees sequentially and in parallel to several depths, which must give the same text,
+ * and checks that no more values are forked than the depth allows.
+ */
+class ParallelWriteCheck {
+    private static final int DOCUMENTS = 200;
+
+    static void run() throws IOException {
+        CountingPool pool = new CountingPool();
+        try {
+            Random random = new Random(0x5EED);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                JsonObject tree = object(random, 0);
+                String expected = write(tree, null, 0);
+                for (int depth = 1; depth <= 4; depth++) {
+                    pool.forks.set(0);
+                    ConformanceSuite.expectEqual(expected, write(tree, pool, depth), "Output written in parallel to depth " + depth);
+                    if (depth == 1) {
+                        ConformanceSuite.expect(pool.forks.get() <= Math.max(0, tree.size() - 1),
+                                "Forked " + pool.forks.get() + " values to depth 1 of a mapping with " + tree.size() + " entries");
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String write(JsonObject tree, @Nullable ForkJoinPool pool, int depth) throws IOException {
+        StringWriter out = new StringWriter();
+        try (YamlWriter writer = new YamlWriter(out)) {
+            writer.setParallel(pool, depth);
+            writer.value(tree);
+        }
+        return out.toString();
+    }
+
+    private static JsonObject object(Random random, int depth) {
+        JsonObject json = new JsonObject();
+        for (int i = 0, size = 1 + random.nextInt(6); i < size; i++) {
+            json.add("key_" + i, value(random, depth + 1));
+        }
+        return json;
+    }
+
+    private static JsonElement value(Random random, int depth) {
+        int kind = depth > 5 ? 2 + random.nextInt(4) : random.nextInt(6);
+        return switch (kind) {
+            case 0 -> object(random, depth);
+            case 1 -> {
+                JsonArray array = new JsonArray();
+                for (int i = 0, size = random.nextInt(5); i < size; i++) {
+                    array.add(value(random, depth + 1));
+                }
+                yield array;
+            }
+            case 2 -> new JsonPrimitive(random.nextInt(1000));
+            case 3 -> new JsonPrimitive(random.nextBoolean());
+            case 4 -> new JsonPrimitive("line one\nline two");
+            default -> new JsonPrimitive("value " + random.nextInt(100));
+        };
+    }
+
+    private static final class CountingPool extends ForkJoinPool {
+        private final AtomicInteger forks = new AtomicInteger();
+
+        @Override
+        public <T> ForkJoinTask<T> submit(Callable<T> task) {
+            forks.incrementAndGet();
+            return super.submit(task);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.sollace.yaml.conformance;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sollace.yaml.YamlReader;
+
+/**
+ * Reads randomly generated single and double quoted scalars and compares them against a reference decoder
+ * that works on the whole string at once. Every scalar is also read through a reader that hands over one
+ * character at a time, so each run and escape is split across buffer refills, and streamed into a Writer
+ * the way readScalar hands it over in chunks.
+ */
+class QuotedScanCheck {
+    private static final long SEED = 0x5EED_0044L;
+    private static final int CASES = 20_000;
+
+    private static final String TEXT = "abcxyzABC0129 ,:#[]{}-?&*!|>%@`~\u00E9\u20AC";
+    // characters that are only literal inside single quotes
+    private static final String SINGLE_QUOTED_TEXT = TEXT + "\"\\";
+    private static final String SIMPLE_ESCAPES = "0abtnvfre \t\"/\\N_LP";
+    private static final String[] INVALID = { "\\q", "\\x4z", "\\u12G4", "\\U00110000" };
+
+    static void run() throws IOException {
+        Random random = new Random(SEED);
+        for (int i = 0; i < CASES; i++) {
+            char quote = random.nextBoolean() ? '"' : '\'';
+            String body = generate(random, quote);
+            String expected = decode(body, quote);
+            String scalar = quote + body + quote;
+
+            for (String text : new String[] { "k: " + scalar + "\n", "k: [" + scalar + "]\n" }) {
+                for (boolean oneChar : new boolean[] { false, true }) {
+                    JsonElement value = read(text, oneChar).get("k");
+                    if (value.isJsonArray()) {
+                        value = value.getAsJsonArray().get(0);
+                    }
+                    ConformanceSuite.expectEqual(expected, value.getAsString(),
+                            "Case " + i + (oneChar ? " read one character at a time" : "") + " from\n" + text);
+                }
+            }
+            String text = "k: " + scalar + "\n";
+            ConformanceSuite.expectEqual(expected, stream(text), "Case " + i + " streamed from\n" + text);
+        }
+
+        // long enough to be handed over in several chunks
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; body.length() < 100_000; i++) {
+            body.append(i % 7 == 0 ? "\\t" : "word ").append(i % 13 == 0 ? "\n  " : "");
+        }
+        for (char quote : new char[] { '"', '\'' }) {
+            String text = "k: " + quote + body + quote + "\n";
+            ConformanceSuite.expectEqual(decode(body.toString(), quote), stream(text), "Long " + quote + " scalar streamed");
+        }
+
+        for (String escape : INVALID) {
+            String text = "k: \"a" + escape + "b\"\n";
+            try {
+                read(text, true);
+                throw new AssertionError("Invalid escape was accepted in\n" + text);
+            } catch (IOException expected) {
+                // invalid escapes fail instead of being read as something else
+            }
+        }
+
+        // a backslash that ends the input is reported where it is, read at once or a character at a time
+        for (boolean oneChar : new boolean[] { false, true }) {
+            String text = "k: \"ab\\";
+            try {
+                read(text, oneChar);
+                throw new AssertionError("Unterminated escape was accepted in\n" + text);
+            } catch (IOException e) {
+                ConformanceSuite.expectEqual("Unterminated escape sequence at line 1, column 7", e.getMessage(), "Error for\n" + text);
+            }
+        }
+    }
+
+    private static JsonObject read(String text, boolean oneChar) throws IOException {
+        Reader source = new StringReader(text);
+        try (YamlReader reader = new YamlReader(oneChar ? new OneCharReader(source) : source)) {
+            return reader.readDocument();
+        }
+    }
+
+    private static String stream(String text) throws IOException {
+        try (YamlReader reader = new YamlReader(new StringReader(text))) {
+            reader.readKey();
+            StringWriter out = new StringWriter();
+            reader.readScalar(out);
+            return out.toString();
+        }
+    }
+
+    private static String generate(Random random, char quote) {
+        String lineBreak = switch (random.nextInt(3)) {
+            case 0 -> "\n";
+            case 1 -> "\r\n";
+            default -> "\r";
+        };
+        StringBuilder body = new StringBuilder();
+        int pieces = random.nextInt(12);
+        for (int i = 0; i < pieces; i++) {
+            switch (random.nextInt(quote == '"' ? 9 : 5)) {
+                case 0, 1 -> {
+                    String text = quote == '"' ? TEXT : SINGLE_QUOTED_TEXT;
+                    int length = 1 + random.nextInt(20);
+                    for (int j = 0; j < length; j++) {
+                        body.append(text.charAt(random.nextInt(text.length())));
+                    }
+                    if (random.nextInt(8) == 0) {
+                        body.append("\uD83D\uDE00");
+                    }
+                }
+                case 2 -> body.append(blanks(random, 1));
+                case 3 -> {
+                    // a line break, sometimes followed by empty lines, then the indentation of the next line
+                    int lines = 1 + (random.nextInt(4) == 0 ? random.nextInt(3) : 0);
+                    for (int j = 0; j < lines; j++) {
+                        body.append(blanks(random, 0)).append(lineBreak);
+                    }
+                    body.append(' ').append(blanks(random, 0));
+                }
+                case 4 -> body.append(quote == '"' ? "\\\\" : "''");
+                case 5, 6 -> body.append('\\').append(SIMPLE_ESCAPES.charAt(random.nextInt(SIMPLE_ESCAPES.length())));
+                case 7 -> {
+                    switch (random.nextInt(4)) {
+                        case 0 -> body.append(String.format("\\x%02x", random.nextInt(0x100)));
+                        case 1 -> body.append(String.format("\\u%04X", random.nextInt(0x10000)));
+                        case 2 -> body.append(String.format("\\U%08x", random.nextInt(Character.MAX_CODE_POINT + 1)));
+                        default -> {
+                            // a surrogate pair written as two escapes
+                            int codepoint = Character.MIN_SUPPLEMENTARY_CODE_POINT
+                                    + random.nextInt(Character.MAX_CODE_POINT + 1 - Character.MIN_SUPPLEMENTARY_CODE_POINT);
+                            body.append(String.format("\\u%04x\\u%04x", (int)Character.highSurrogate(codepoint), (int)Character.lowSurrogate(codepoint)));
+                        }
+                    }
+                }
+                default -> body.append(blanks(random, 0)).append('\\').append(lineBreak).append(blanks(random, 0));
+            }
+        }
+        return body.toString();
+    }
+
+    private static String blanks(Random random, int min) {
+        StringBuilder blanks = new StringBuilder();
+        for (int count = min + random.nextInt(3); count > 0; count--) {
+            blanks.append(random.nextInt(4) == 0 ? '\t' : ' ');
+        }
+        return blanks.toString();
+    }
+
+    /**
+     * Decodes the text between the quotes in one go.
+     * Literal blanks before a line break are dropped but escaped ones are kept, and the result is trimmed the way the reader trims it.
+     */
+    static String decode(String body, char quote) {
+        StringBuilder out = new StringBuilder();
+        int trailingBlanks = 0;
+        int i = 0;
+        while (i < body.length()) {
+            char c = body.charAt(i++);
+            if (c == '\r' || c == '\n') {
+                out.setLength(out.length() - trailingBlanks);
+                i = fold(body, skipLineBreak(body, c, i), out, false);
+                trailingBlanks = 0;
+            } else if (quote == '\'' && c == '\'') {
+                out.append('\'');
+                i++;
+                trailingBlanks = 0;
+            } else if (quote == '"' && c == '\\') {
+                char escape = body.charAt(i++);
+                trailingBlanks = 0;
+                int digits = switch (escape) {
+                    case 'x' -> 2;
+                    case 'u' -> 4;
+                    case 'U' -> 8;
+                    default -> 0;
+                };
+                if (digits > 0) {
+                    out.appendCodePoint(Integer.parseInt(body.substring(i, i + digits), 16));
+                    i += digits;
+                } else if (escape == '\r' || escape == '\n') {
+                    i = fold(body, skipLineBreak(body, escape, i), out, true);
+                } else {
+                    out.append(switch (escape) {
+                        case '0' -> '\0';
+                        case 'a' -> '\u0007';
+                        case 'b' -> '\b';
+                        case 't', '\t' -> '\t';
+                        case 'n' -> '\n';
+                        case 'v' -> '\u000B';
+                        case 'f' -> '\f';
+                        case 'r' -> '\r';
+                        case 'e' -> '\u001B';
+                        case 'N' -> '\u0085';
+                        case '_' -> '\u00A0';
+                        case 'L' -> '\u2028';
+                        case 'P' -> '\u2029';
+                        default -> escape;
+                    });
+                }
+            } else {
+                out.append(c);
+                trailingBlanks = c == ' ' || c == '\t' ? trailingBlanks + 1 : 0;
+            }
+        }
+
+        int start = 0;
+        int end = out.length();
+        while (start < end && out.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && out.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return out.substring(start, end);
+    }
+
+    // a break becomes a space, or as many line breaks as there are empty lines after it, and the next line's indentation is dropped
+    private static int fold(String body, int i, StringBuilder out, boolean escaped) {
+        int emptyLines = 0;
+        while (true) {
+            while (i < body.length() && (body.charAt(i) == ' ' || body.charAt(i) == '\t')) {
+                i++;
+            }
+            if (i == body.length() || (body.charAt(i) != '\r' && body.charAt(i) != '\n')) {
+                break;
+            }
+            i = skipLineBreak(body, body.charAt(i), i + 1);
+            emptyLines++;
+        }
+        if (emptyLines > 0) {
+            out.append("\n".repeat(emptyLines));
+        } else if (!escaped) {
+            out.append(' ');
+        }
+        return i;
+    }
+
+    private static int skipLineBreak(String body, char c, int i) {
+        return c == '\r' && i < body.length() && body.charAt(i) == '\n' ? i + 1 : i;
+    }
+
+    private static final class OneCharReader extends FilterReader {
+        OneCharReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, 1));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.sollace.yaml.conformance;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.sollace.yaml.Transcoder;
+import com.sollace.yaml.YamlReader;
+
+/**
+ * Transcodes yaml to json and checks the json holds the same tree YamlReader.readDocument reads,
+ * with no mapping written with the same key twice.
+ *
+ * Randomly generated json is also transcoded to yaml and back, and has to come out the same.
+ * Strings are kept free of leading and trailing blanks and control characters, which the reader trims even from quoted scalars.
+ */
+class TranscoderCheck {
+    private static final String[] DOCUMENTS = {
+            """
+            b: &b
+              x: 1
+              y: 1
+            before:
+              x: 2
+              <<: *b
+            after:
+              <<: *b
+              x: 3
+            both:
+              y: 4
+              <<: *b
+              x: 5
+            """,
+            """
+            first: &first {a: 1, b: 1}
+            second: &second {b: 2, c: 2}
+            list:
+              c: 0
+              <<: [*first, *second]
+            flow: {a: 9, <<: *second}
+            nested:
+              inner:
+                <<: *first
+                a: 3
+              after: true
+            items:
+              - <<: *first
+                b: 5
+              - <<: *second
+            """,
+            """
+            base: &base
+              name: base
+              values: [1, 2]
+            copy: *base
+            merged:
+              <<: *base
+              name: override
+              extra: !!str 1
+            set: !!set
+              ? a
+              ? b
+            """,
+    };
+
+    private static final long SEED = 0x5EED_0037L;
+    private static final int ROUND_TRIPS = 2_000;
+
+    private static final String[] STRINGS = {
+            "", "has: colon", "#hash", "- dash", "-", "?", ":", "a:", "trailing #", "a #comment", "[flow]", "{map}",
+            "&anchor", "*alias", "!tag", "!!str", "|", ">", "'single'", "\"double\"", "%directive", "@at", "`tick",
+            "true", "No", "null", "~", "Null", "1", "-2.5", "0x1F", "0o17", "1,000", ".inf", "-.Inf", ".NaN", "1e+5",
+            "plain text", "a, b", "back\\slash", "tab\tinside", "two\nlines", "break\r\nhere", "bell\u0007ring",
+            "caf\u00E9", "\u20AC5", "\uD83D\uDE00", "<<",
+    };
+    private static final String TEXT = "abc xyz09:#-,[]{}&*!|>'\"%@`?\\\t\n\u00E9";
+
+    static void run() throws IOException {
+        Random random = new Random(SEED);
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            JsonObject json = new JsonObject();
+            fill(random, json, 0);
+            StringWriter yaml = new StringWriter();
+            Transcoder.jsonToYaml(new StringReader(json.toString()), yaml);
+            StringWriter back = new StringWriter();
+            try {
+                Transcoder.yamlToJson(new StringReader(yaml.toString()), back);
+            } catch (IOException e) {
+                throw new AssertionError("Round trip " + i + " failed to read back\n" + yaml, e);
+            }
+            ConformanceSuite.expectEqual(parse(json.toString()), parse(back.toString()),
+                    "Round trip " + i + " of\n" + json + "\nthrough\n" + yaml);
+        }
+
+        for (String text : DOCUMENTS) {
+            JsonObject expected;
+            try (YamlReader reader = new YamlReader(new StringReader(text))) {
+                expected = reader.readDocument();
+            }
+            StringWriter json = new StringWriter();
+            Transcoder.yamlToJson(new StringReader(text), json);
+            ConformanceSuite.expectEqual(expected, parse(json.toString()), "Transcoded json of\n" + text + "\n" + json);
+        }
+    }
+
+    private static void fill(Random random, JsonObject object, int depth) {
+        for (int i = random.nextInt(5); i > 0; i--) {
+            object.add("k" + object.size(), generate(random, depth + 1));
+        }
+    }
+
+    private static JsonElement generate(Random random, int depth) {
+        switch (random.nextInt(depth < 4 ? 8 : 6)) {
+            case 0 -> {
+                return new JsonPrimitive(STRINGS[random.nextInt(STRINGS.length)]);
+            }
+            case 1, 2 -> {
+                StringBuilder text = new StringBuilder();
+                for (int i = 1 + random.nextInt(12); i > 0; i--) {
+                    text.append(TEXT.charAt(random.nextInt(TEXT.length())));
+                }
+                return new JsonPrimitive(text.toString().strip());
+            }
+            case 3 -> {
+                return new JsonPrimitive(random.nextBoolean() ? random.nextInt() : random.nextInt(100_000) / 100D);
+            }
+            case 4 -> {
+                return new JsonPrimitive(random.nextBoolean());
+            }
+            case 5 -> {
+                return JsonNull.INSTANCE;
+            }
+            case 6 -> {
+                JsonObject object = new JsonObject();
+                fill(random, object, depth);
+                return object;
+            }
+            default -> {
+                JsonArray array = new JsonArray();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    array.add(generate(random, depth + 1));
+                }
+                return array;
+            }
+        }
+    }
+
+    // reads json the way gson does, but failing on a repeated key where gson would keep the last value
+    static JsonElement parse(String json) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            return read(reader, json);
+        }
+    }
+
+    private static JsonElement read(JsonReader reader, String json) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT -> {
+                JsonObject object = new JsonObject();
+                Set<String> keys = new HashSet<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    ConformanceSuite.expect(keys.add(key), "Key " + key + " written twice in\n" + json);
+                    object.add(key, read(reader, json));
+                }
+                reader.endObject();
+                return object;
+            }
+            case BEGIN_ARRAY -> {
+                JsonArray array = new JsonArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.add(read(reader, json));
+                }
+                reader.endArray();
+                return array;
+            }
+            case STRING -> {
+                return new JsonPrimitive(reader.nextString());
+            }
+            case NUMBER -> {
+                return new JsonPrimitive(new LazilyParsedNumber(reader.nextString()));
+            }
+            case BOOLEAN -> {
+                return new JsonPrimitive(reader.nextBoolean());
+            }
+            default -> {
+                reader.nextNull();
+                return JsonNull.INSTANCE;
+            }
+        }
+    }
+}
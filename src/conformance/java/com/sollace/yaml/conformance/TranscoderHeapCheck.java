@@ -0,0 +1,104 @@
+package com.sollace.yaml.conformance;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import com.sollace.yaml.Transcoder;
+
+/**
+ * Transcodes a document with a single top-level key whose value is twice the size of the heap,
+ * which only fits if the json is written out while the yaml is still being read.
+ *
+ * The document is generated as it is read and the json is counted rather than kept, so neither has to fit in memory either.
+ */
+class TranscoderHeapCheck {
+    static void run() throws IOException {
+        long target = Runtime.getRuntime().maxMemory() * 2;
+        ItemsReader in = new ItemsReader(target);
+        JsonCounter out = new JsonCounter();
+        Transcoder.yamlToJson(in, out);
+
+        ConformanceSuite.expect(in.read >= target, "Read " + in.read + " characters of " + target);
+        ConformanceSuite.expectEqual(in.items, out.items, "Items written");
+        ConformanceSuite.expectEqual("}]}", out.tail.toString(), "End of the json");
+    }
+
+    /**
+     * Produces items:\n followed by list items until at least the target number of characters has been read.
+     */
+    private static final class ItemsReader extends Reader {
+        private final long target;
+        private final StringBuilder chunk = new StringBuilder();
+        private int position;
+        private long read;
+        private long items;
+
+        ItemsReader(long target) {
+            this.target = target;
+            chunk.append("items:\n");
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == chunk.length()) {
+                if (read >= target) {
+                    return -1;
+                }
+                chunk.setLength(0);
+                position = 0;
+                for (int i = 0; i < 64; i++, items++) {
+                    chunk.append("  - id: ").append(items).append('\n')
+                         .append("    name: \"item ").append(items).append("\"\n")
+                         .append("    tags: [alpha, bravo, ").append(items % 7).append("]\n")
+                         .append("    nested:\n")
+                         .append("      enabled: ").append(items % 2 == 0).append('\n');
+                }
+            }
+            int count = Math.min(length, chunk.length() - position);
+            chunk.getChars(position, position + count, buffer, offset);
+            position += count;
+            read += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Counts the items written by looking for their ids, and keeps the last few characters.
+     */
+    private static final class JsonCounter extends Writer {
+        private static final String ID = "\"id\":";
+
+        private final StringBuilder tail = new StringBuilder();
+        private int matched;
+        private long items;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                char c = buffer[i];
+                matched = c == ID.charAt(matched) ? matched + 1 : c == ID.charAt(0) ? 1 : 0;
+                if (matched == ID.length()) {
+                    items++;
+                    matched = 0;
+                }
+                tail.append(c);
+                if (tail.length() > 3) {
+                    tail.deleteCharAt(0);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
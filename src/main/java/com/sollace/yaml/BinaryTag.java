@@ -0,0 +1,91 @@
+package com.sollace.yaml;
+
+import java.util.Arrays;
+
+/**
+ * !!binary, decoded from the scalar's characters straight into the byte array.
+ */
+final class BinaryTag implements YamlTag<byte[]> {
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+    static {
+        Arrays.fill(VALUES, (byte)-1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte)i;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    public byte[] decode(CharSequence text) {
+        // counted first so the result can be allocated at its final size
+        int digits = 0;
+        int padding = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '=') {
+                padding++;
+            } else if (c < VALUES.length && VALUES[c] != -1) {
+                if (padding > 0) {
+                    throw new IllegalArgumentException("Base64 character after padding at index " + i);
+                }
+                digits++;
+            } else if (!Character.isWhitespace(c)) {
+                throw new IllegalArgumentException("Illegal base64 character '" + c + "' at index " + i);
+            }
+        }
+        if (digits % 4 == 1 || padding > 2 || (padding > 0 && (digits + padding) % 4 != 0)) {
+            throw new IllegalArgumentException("Base64 text has " + digits + " characters and " + padding + " padding");
+        }
+
+        byte[] bytes = new byte[digits / 4 * 3 + Math.max(0, digits % 4 - 1)];
+        int bits = 0;
+        int count = 0;
+        int length = 0;
+        for (int i = 0; i < text.length() && length < bytes.length; i++) {
+            char c = text.charAt(i);
+            if (c >= VALUES.length || VALUES[c] == -1) {
+                continue;
+            }
+            bits = bits << 6 | VALUES[c];
+            if (++count == 4) {
+                bytes[length++] = (byte)(bits >> 16);
+                bytes[length++] = (byte)(bits >> 8);
+                bytes[length++] = (byte)bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            bytes[length] = (byte)(bits >> 4);
+        } else if (count == 3) {
+            bytes[length++] = (byte)(bits >> 10);
+            bytes[length] = (byte)(bits >> 2);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void encode(byte[] value, StringBuilder out) {
+        out.ensureCapacity(out.length() + (value.length + 2) / 3 * 4);
+        int i = 0;
+        for (; i + 2 < value.length; i += 3) {
+            int bits = (value[i] & 0xFF) << 16 | (value[i + 1] & 0xFF) << 8 | (value[i + 2] & 0xFF);
+            out.append(ALPHABET[bits >> 18])
+               .append(ALPHABET[bits >> 12 & 0x3F])
+               .append(ALPHABET[bits >> 6 & 0x3F])
+               .append(ALPHABET[bits & 0x3F]);
+        }
+        if (i + 1 == value.length) {
+            int bits = (value[i] & 0xFF) << 16;
+            out.append(ALPHABET[bits >> 18]).append(ALPHABET[bits >> 12 & 0x3F]).append("==");
+        } else if (i + 2 == value.length) {
+            int bits = (value[i] & 0xFF) << 16 | (value[i + 1] & 0xFF) << 8;
+            out.append(ALPHABET[bits >> 18]).append(ALPHABET[bits >> 12 & 0x3F]).append(ALPHABET[bits >> 6 & 0x3F]).append('=');
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.sollace.yaml;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.sollace.yaml.SlowCoercion")
+@Label("YAML Slow Coercion")
+@Category("YAML")
+@Description("A plain scalar that took longer than the threshold to convert to a number, boolean or string")
+@Threshold("1 ms")
+@StackTrace(false)
+class CoercionEvent extends jdk.jfr.Event {
+    @Label("Length")
+    int length;
+
+    @Label("Value")
+    String value;
+
+    @Label("Result Type")
+    String type;
+}
@@ -0,0 +1,58 @@
+package com.sollace.yaml;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+/**
+ * An immutable sequence of values.
+ */
+public final class CompactArray extends CompactNode {
+    static final CompactArray EMPTY = new CompactArray(new byte[0], null, null);
+
+    CompactArray(byte[] tags, @Nullable long[] bits, @Nullable Object[] refs) {
+        super(tags, bits, refs);
+    }
+
+    public static CompactArray of(JsonArray json) {
+        return new CompactBuilder().array(json);
+    }
+
+    /**
+     * Returns a copy of this sequence with the element at the index replaced, or with the value appended
+     * if the index is the size. Everything else is shared with this sequence.
+     */
+    public CompactArray with(int index, JsonElement value) {
+        return with(index, slot(value));
+    }
+
+    public CompactArray with(int index, CompactNode value) {
+        return with(index, slot(value));
+    }
+
+    CompactArray with(int index, Slot slot) {
+        if (index < 0 || index > tags.length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Slots slots = slotsWith(index, slot);
+        return new CompactArray(slots.tags(), slots.bits(), slots.refs());
+    }
+
+    public CompactArray without(int index) {
+        if (index < 0 || index >= tags.length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Slots slots = slotsWithout(index);
+        return new CompactArray(slots.tags(), slots.bits(), slots.refs());
+    }
+
+    @Override
+    public JsonArray toJson() {
+        JsonArray json = new JsonArray(tags.length);
+        for (int i = 0; i < tags.length; i++) {
+            json.add(toJson(i));
+        }
+        return json;
+    }
+}
@@ -0,0 +1,311 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Builds compact nodes, either straight from a YamlReader or by converting gson trees,
+ * sharing key tables and short strings between everything it builds.
+ */
+final class CompactBuilder {
+    // longer strings are rarely repeated, so pooling them would only grow the pool
+    private static final int POOLED_LENGTH = 32;
+    // stands in for null values, which the reader doesn't accept from a builder
+    private static final Object NULL = new Object();
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<List<String>, CompactObject.Keys> shapes = new HashMap<>();
+
+    /**
+     * Returns a builder for YamlReader.readDocument, which passes scalars around as the Boolean, Number or String they resolve to.
+     */
+    YamlTreeBuilder<Object> tree() {
+        return new Tree();
+    }
+
+    CompactObject object(JsonObject json) {
+        Entries entries = new Entries(json.size(), true);
+        for (var entry : json.entrySet()) {
+            entries.add(entry.getKey(), value(entry.getValue()));
+        }
+        return entries.toObject();
+    }
+
+    CompactArray array(JsonArray json) {
+        Entries entries = new Entries(json.size(), false);
+        for (JsonElement element : json) {
+            entries.add(null, value(element));
+        }
+        return entries.toArray();
+    }
+
+    CompactNode.Slot slot(JsonElement value) {
+        Entries entries = new Entries(1, false);
+        entries.add(null, value(value));
+        return new CompactNode.Slot(entries.tags[0], entries.bits[0], entries.refs[0]);
+    }
+
+    // converts a gson value into the form the tree passes values around in
+    private Object value(JsonElement json) {
+        if (json.isJsonObject()) {
+            return object(json.getAsJsonObject());
+        }
+        if (json.isJsonArray()) {
+            return array(json.getAsJsonArray());
+        }
+        if (json.isJsonNull()) {
+            return NULL;
+        }
+        JsonPrimitive primitive = json.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean();
+        }
+        return primitive.isString() ? primitive.getAsString() : primitive.getAsNumber();
+    }
+
+    private String pool(String value) {
+        return value.length() > POOLED_LENGTH ? value : strings.computeIfAbsent(value, v -> v);
+    }
+
+    private CompactObject.Keys keys(String[] names) {
+        if (names.length == 0) {
+            return CompactObject.Keys.EMPTY;
+        }
+        @Nullable
+        CompactObject.Keys keys = shapes.get(Arrays.asList(names));
+        if (keys == null) {
+            keys = new CompactObject.Keys(names);
+            shapes.put(Arrays.asList(names), keys);
+        }
+        return keys;
+    }
+
+    /**
+     * Collects the values of one mapping or sequence, storing each value in its typed slot as soon as it is added.
+     */
+    final class Entries {
+        @Nullable
+        private String[] names;
+        private byte[] tags;
+        private long[] bits;
+        private Object[] refs;
+        private int size;
+        private boolean hasBits;
+        private boolean hasRefs;
+
+        @Nullable
+        private Map<String, Integer> positions;
+
+        Entries(int capacity, boolean named) {
+            capacity = Math.max(capacity, 1);
+            names = named ? new String[capacity] : null;
+            tags = new byte[capacity];
+            bits = new long[capacity];
+            refs = new Object[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(@Nullable String name, Object value) {
+            if (size == tags.length) {
+                int capacity = size * 2;
+                if (names != null) {
+                    names = Arrays.copyOf(names, capacity);
+                }
+                tags = Arrays.copyOf(tags, capacity);
+                bits = Arrays.copyOf(bits, capacity);
+                refs = Arrays.copyOf(refs, capacity);
+            }
+            if (names != null) {
+                names[size] = pool(name);
+            }
+            set(size++, value);
+        }
+
+        /**
+         * Adds an entry to a mapping whose keys may repeat. A repeated key keeps its original position,
+         * and only takes the new value if replace is set.
+         *
+         * @return true if the key was not already in the mapping
+         */
+        boolean put(String name, Object value, boolean replace) {
+            if (positions == null) {
+                positions = new HashMap<>();
+            }
+            @Nullable
+            Integer index = positions.putIfAbsent(name, size);
+            if (index == null) {
+                add(name, value);
+                return true;
+            }
+            if (replace) {
+                set(index, value);
+            }
+            return false;
+        }
+
+        private void set(int index, Object value) {
+            bits[index] = 0;
+            refs[index] = null;
+            if (value == NULL) {
+                tags[index] = CompactNode.NULL;
+            } else if (value instanceof CompactObject) {
+                ref(index, CompactNode.OBJECT, value);
+            } else if (value instanceof CompactArray) {
+                ref(index, CompactNode.ARRAY, value);
+            } else if (value instanceof Boolean bool) {
+                bits(index, CompactNode.BOOLEAN, bool ? 1 : 0);
+            } else if (value instanceof String string) {
+                ref(index, CompactNode.STRING, pool(string));
+            } else {
+                // lazily read numbers are parsed now, so they get an unboxed slot like any other
+                Number number = value instanceof LazyNumber lazy ? lazy.resolve() : (Number)value;
+                if (number instanceof Integer) {
+                    bits(index, CompactNode.INT, number.intValue());
+                } else if (number instanceof Long) {
+                    bits(index, CompactNode.LONG, number.longValue());
+                } else if (number instanceof Double) {
+                    bits(index, CompactNode.DOUBLE, Double.doubleToRawLongBits(number.doubleValue()));
+                } else {
+                    ref(index, CompactNode.NUMBER, number);
+                }
+            }
+        }
+
+        private void bits(int index, byte tag, long value) {
+            tags[index] = tag;
+            bits[index] = value;
+            hasBits = true;
+        }
+
+        private void ref(int index, byte tag, Object value) {
+            tags[index] = tag;
+            refs[index] = value;
+            hasRefs = true;
+        }
+
+        CompactObject toObject() {
+            if (size == 0) {
+                return CompactObject.EMPTY;
+            }
+            return new CompactObject(keys(trim(names)), trim(tags), hasBits ? trim(bits) : null, hasRefs ? trim(refs) : null);
+        }
+
+        CompactArray toArray() {
+            if (size == 0) {
+                return CompactArray.EMPTY;
+            }
+            return new CompactArray(trim(tags), hasBits ? trim(bits) : null, hasRefs ? trim(refs) : null);
+        }
+
+        private byte[] trim(byte[] array) {
+            return array.length == size ? array : Arrays.copyOf(array, size);
+        }
+
+        private long[] trim(long[] array) {
+            return array.length == size ? array : Arrays.copyOf(array, size);
+        }
+
+        private <T> T[] trim(T[] array) {
+            return array.length == size ? array : Arrays.copyOf(array, size);
+        }
+    }
+
+    /**
+     * Collections under construction are Entries and finished ones compact nodes. Scalars are the Boolean, Number or String
+     * they resolve to, with NULL for null, and are only put in a typed slot once they are added to a collection.
+     */
+    private final class Tree implements YamlTreeBuilder<Object> {
+        @Override
+        public Object startMapping() {
+            return new Entries(8, true);
+        }
+
+        @Override
+        public void put(Object mapping, String key, Object value) {
+            ((Entries)mapping).put(key, value, true);
+        }
+
+        @Override
+        public Object endMapping(Object mapping) {
+            return ((Entries)mapping).toObject();
+        }
+
+        @Override
+        public Object startSequence() {
+            return new Entries(8, false);
+        }
+
+        @Override
+        public void add(Object sequence, Object value) {
+            ((Entries)sequence).add(null, value);
+        }
+
+        @Override
+        public Object endSequence(Object sequence) {
+            return ((Entries)sequence).toArray();
+        }
+
+        @Override
+        public Object scalar(ScalarKind kind, String text) {
+            return kind == ScalarKind.PLAIN ? value(TypeCoersion.valueOf(text)) : text;
+        }
+
+        @Override
+        public Object number(Number value) {
+            return value;
+        }
+
+        @Override
+        public Object bool(boolean value) {
+            return value;
+        }
+
+        @Override
+        public Object nullValue() {
+            return NULL;
+        }
+
+        @Override
+        public <V> Object tagged(YamlTag<V> tag, V value) {
+            if (value instanceof Number || value instanceof Boolean || value instanceof String) {
+                return value;
+            }
+            return YamlTreeBuilder.super.tagged(tag, value);
+        }
+
+        @Override
+        public int merge(Object mapping, Object value) throws IOException {
+            if (value instanceof CompactArray array) {
+                int added = 0;
+                for (int i = 0; i < array.size(); i++) {
+                    added += merge(mapping, array.isNull(i) ? NULL : array.get(i));
+                }
+                return added;
+            }
+            if (!(value instanceof CompactObject object)) {
+                throw new IOException("Merge keys require a map or sequence of maps but got " + (value == NULL ? null : value));
+            }
+            int added = 0;
+            // keys already present in the mapping take precedence, ones that appear afterwards replace the merged value
+            for (int i = 0; i < object.size(); i++) {
+                if (((Entries)mapping).put(object.keyAt(i), object.isNull(i) ? NULL : object.get(i), false)) {
+                    added++;
+                }
+            }
+            return added;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.sollace.yaml;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * An immutable collection of values held in flat arrays.
+ *
+ * Booleans and numbers are kept unboxed in a long array, and strings and nested collections in an object array.
+ * Either array is left out when nothing needs it.
+ */
+public abstract sealed class CompactNode permits CompactObject, CompactArray {
+    static final byte NULL = 0;
+    static final byte BOOLEAN = 1;
+    static final byte INT = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+    // any other kind of number, kept as the object it was read as
+    static final byte NUMBER = 5;
+    static final byte STRING = 6;
+    static final byte OBJECT = 7;
+    static final byte ARRAY = 8;
+
+    final byte[] tags;
+    @Nullable
+    final long[] bits;
+    @Nullable
+    final Object[] refs;
+
+    CompactNode(byte[] tags, @Nullable long[] bits, @Nullable Object[] refs) {
+        this.tags = tags;
+        this.bits = bits;
+        this.refs = refs;
+    }
+
+    public int size() {
+        return tags.length;
+    }
+
+    public boolean isEmpty() {
+        return tags.length == 0;
+    }
+
+    public Type getType(int index) {
+        return switch (tags[index]) {
+            case NULL -> Type.NULL;
+            case BOOLEAN -> Type.BOOLEAN;
+            case INT, LONG, DOUBLE, NUMBER -> Type.NUMBER;
+            case STRING -> Type.STRING;
+            case OBJECT -> Type.OBJECT;
+            default -> Type.ARRAY;
+        };
+    }
+
+    public boolean isNull(int index) {
+        return tags[index] == NULL;
+    }
+
+    public boolean getBoolean(int index) {
+        if (tags[index] != BOOLEAN) {
+            throw new IllegalStateException("Not a boolean: " + get(index));
+        }
+        return bits[index] != 0;
+    }
+
+    public int getInt(int index) {
+        return tags[index] == INT ? (int)bits[index] : getNumber(index).intValue();
+    }
+
+    public long getLong(int index) {
+        return tags[index] == INT || tags[index] == LONG ? bits[index] : getNumber(index).longValue();
+    }
+
+    public double getDouble(int index) {
+        return tags[index] == DOUBLE ? Double.longBitsToDouble(bits[index]) : getNumber(index).doubleValue();
+    }
+
+    public Number getNumber(int index) {
+        return switch (tags[index]) {
+            case INT -> (int)bits[index];
+            case LONG -> bits[index];
+            case DOUBLE -> Double.longBitsToDouble(bits[index]);
+            case NUMBER -> (Number)refs[index];
+            default -> throw new IllegalStateException("Not a number: " + get(index));
+        };
+    }
+
+    /**
+     * Returns the value at the index as a string. Booleans and numbers are converted, and nulls are returned as null.
+     */
+    @Nullable
+    public String getString(int index) {
+        return switch (tags[index]) {
+            case NULL -> null;
+            case STRING -> (String)refs[index];
+            case OBJECT, ARRAY -> throw new IllegalStateException("Not a scalar: " + get(index));
+            default -> String.valueOf(get(index));
+        };
+    }
+
+    @Nullable
+    public CompactObject getObject(int index) {
+        return switch (tags[index]) {
+            case NULL -> null;
+            case OBJECT -> (CompactObject)refs[index];
+            default -> throw new IllegalStateException("Not an object: " + get(index));
+        };
+    }
+
+    @Nullable
+    public CompactArray getArray(int index) {
+        return switch (tags[index]) {
+            case NULL -> null;
+            case ARRAY -> (CompactArray)refs[index];
+            default -> throw new IllegalStateException("Not an array: " + get(index));
+        };
+    }
+
+    /**
+     * Returns the value at the index as a Boolean, Number, String, CompactObject or CompactArray.
+     */
+    @Nullable
+    public Object get(int index) {
+        return switch (tags[index]) {
+            case NULL -> null;
+            case BOOLEAN -> bits[index] != 0;
+            case INT, LONG, DOUBLE -> getNumber(index);
+            default -> refs[index];
+        };
+    }
+
+    /**
+     * Copies this node's values with the one at the index replaced, or with the value appended if the index is the size.
+     */
+    Slots slotsWith(int index, Slot slot) {
+        int size = Math.max(tags.length, index + 1);
+        byte[] tags = Arrays.copyOf(this.tags, size);
+        long[] bits = this.bits != null ? Arrays.copyOf(this.bits, size) : slot.ref() == null ? new long[size] : null;
+        Object[] refs = this.refs != null ? Arrays.copyOf(this.refs, size) : slot.ref() != null ? new Object[size] : null;
+        tags[index] = slot.tag();
+        if (bits != null) {
+            bits[index] = slot.bits();
+        }
+        if (refs != null) {
+            refs[index] = slot.ref();
+        }
+        return new Slots(tags, bits, refs);
+    }
+
+    Slots slotsWithout(int index) {
+        return new Slots(remove(tags, index), bits == null ? null : remove(bits, index), refs == null ? null : remove(refs, index));
+    }
+
+    static byte[] remove(byte[] array, int index) {
+        byte[] copy = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    static long[] remove(long[] array, int index) {
+        long[] copy = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    static <T> T[] remove(T[] array, int index) {
+        T[] copy = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    static Slot slot(JsonElement value) {
+        return new CompactBuilder().slot(value);
+    }
+
+    static Slot slot(CompactNode node) {
+        return new Slot(node instanceof CompactObject ? OBJECT : ARRAY, 0, node);
+    }
+
+    JsonElement toJson(int index) {
+        return switch (tags[index]) {
+            case NULL -> JsonNull.INSTANCE;
+            case BOOLEAN -> bits[index] != 0 ? TypeCoersion.TRUE : TypeCoersion.FALSE;
+            case INT, LONG, DOUBLE, NUMBER -> new JsonPrimitive(getNumber(index));
+            case STRING -> new JsonPrimitive((String)refs[index]);
+            default -> ((CompactNode)refs[index]).toJson();
+        };
+    }
+
+    /**
+     * Copies this node into a mutable gson tree.
+     */
+    public abstract JsonElement toJson();
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CompactNode node
+                && node.getClass() == getClass()
+                && Arrays.equals(tags, node.tags)
+                && Arrays.equals(bits, node.bits)
+                && Arrays.equals(refs, node.refs);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(tags) + Arrays.hashCode(bits)) + Arrays.hashCode(refs);
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+
+    // a single value in the form it is stored in
+    record Slot(byte tag, long bits, @Nullable Object ref) {}
+
+    record Slots(byte[] tags, @Nullable long[] bits, @Nullable Object[] refs) {}
+
+    public enum Type {
+        NULL,
+        BOOLEAN,
+        NUMBER,
+        STRING,
+        OBJECT,
+        ARRAY
+    }
+}
@@ -0,0 +1,201 @@
+package com.sollace.yaml;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * An immutable mapping that keeps its keys in document order.
+ *
+ * Mappings with the same keys in the same order share a single key table, so a list of similar records
+ * only stores its keys once.
+ */
+public final class CompactObject extends CompactNode {
+    static final CompactObject EMPTY = new CompactObject(Keys.EMPTY, new byte[0], null, null);
+
+    final Keys keys;
+
+    CompactObject(Keys keys, byte[] tags, @Nullable long[] bits, @Nullable Object[] refs) {
+        super(tags, bits, refs);
+        this.keys = keys;
+    }
+
+    public static CompactObject of(JsonObject json) {
+        return new CompactBuilder().object(json);
+    }
+
+    public List<String> keys() {
+        return Collections.unmodifiableList(Arrays.asList(keys.names));
+    }
+
+    public String keyAt(int index) {
+        return keys.names[index];
+    }
+
+    /**
+     * Returns the position of the key, or -1 if this mapping does not contain it.
+     */
+    public int indexOf(String key) {
+        return keys.indexOf(key);
+    }
+
+    public boolean has(String key) {
+        return keys.indexOf(key) != -1;
+    }
+
+    /**
+     * Returns the value for the key as a Boolean, Number, String, CompactObject or CompactArray,
+     * or null if it is missing or null.
+     */
+    @Nullable
+    public Object get(String key) {
+        int index = keys.indexOf(key);
+        return index == -1 ? null : get(index);
+    }
+
+    @Nullable
+    public String getString(String key) {
+        int index = keys.indexOf(key);
+        return index == -1 ? null : getString(index);
+    }
+
+    @Nullable
+    public CompactObject getObject(String key) {
+        int index = keys.indexOf(key);
+        return index == -1 ? null : getObject(index);
+    }
+
+    @Nullable
+    public CompactArray getArray(String key) {
+        int index = keys.indexOf(key);
+        return index == -1 ? null : getArray(index);
+    }
+
+    public boolean getBoolean(String key, boolean fallback) {
+        int index = keys.indexOf(key);
+        return index == -1 || isNull(index) ? fallback : getBoolean(index);
+    }
+
+    public int getInt(String key, int fallback) {
+        int index = keys.indexOf(key);
+        return index == -1 || isNull(index) ? fallback : getInt(index);
+    }
+
+    public long getLong(String key, long fallback) {
+        int index = keys.indexOf(key);
+        return index == -1 || isNull(index) ? fallback : getLong(index);
+    }
+
+    public double getDouble(String key, double fallback) {
+        int index = keys.indexOf(key);
+        return index == -1 || isNull(index) ? fallback : getDouble(index);
+    }
+
+    /**
+     * Returns a copy of this mapping with the key set to the value. Everything else is shared with this mapping.
+     */
+    public CompactObject with(String key, JsonElement value) {
+        return with(key, slot(value));
+    }
+
+    public CompactObject with(String key, CompactNode value) {
+        return with(key, slot(value));
+    }
+
+    CompactObject with(String key, Slot slot) {
+        int index = keys.indexOf(key);
+        Slots slots = slotsWith(index == -1 ? tags.length : index, slot);
+        Keys keys = this.keys;
+        if (index == -1) {
+            String[] names = Arrays.copyOf(keys.names, keys.names.length + 1);
+            names[names.length - 1] = key;
+            keys = new Keys(names);
+        }
+        return new CompactObject(keys, slots.tags(), slots.bits(), slots.refs());
+    }
+
+    /**
+     * Returns a copy of this mapping without the key, or this mapping if it doesn't contain it.
+     */
+    public CompactObject without(String key) {
+        int index = keys.indexOf(key);
+        if (index == -1) {
+            return this;
+        }
+        if (tags.length == 1) {
+            return EMPTY;
+        }
+        Slots slots = slotsWithout(index);
+        return new CompactObject(new Keys(remove(keys.names, index)), slots.tags(), slots.bits(), slots.refs());
+    }
+
+    @Override
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        for (int i = 0; i < tags.length; i++) {
+            json.add(keys.names[i], toJson(i));
+        }
+        return json;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return super.equals(other) && Arrays.equals(keys.names, ((CompactObject)other).keys.names);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Arrays.hashCode(keys.names);
+    }
+
+    static final class Keys {
+        static final Keys EMPTY = new Keys(new String[0]);
+        // below this many keys a linear scan beats hashing
+        private static final int HASHED_SIZE = 8;
+
+        final String[] names;
+        // open addressed indices into names, offset by one so that zero marks a free slot
+        @Nullable
+        private final int[] table;
+
+        Keys(String[] names) {
+            this.names = names;
+            this.table = names.length > HASHED_SIZE ? buildTable(names) : null;
+        }
+
+        private static int[] buildTable(String[] names) {
+            int[] table = new int[Integer.highestOneBit(names.length * 2 - 1) << 1];
+            for (int i = 0; i < names.length; i++) {
+                int slot = names[i].hashCode() & (table.length - 1);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (table.length - 1);
+                }
+                table[slot] = i + 1;
+            }
+            return table;
+        }
+
+        int indexOf(String key) {
+            if (table == null) {
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equals(key)) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            for (int slot = key.hashCode() & (table.length - 1); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+                String name = names[table[slot] - 1];
+                if (name.equals(key)) {
+                    return table[slot] - 1;
+                }
+            }
+            return -1;
+        }
+    }
+}
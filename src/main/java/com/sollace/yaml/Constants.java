@@ -16,6 +16,8 @@ public interface Constants {
     String FALSE = "False";
 
     String NAN = ".NaN";
+    String INFINITY = ".Inf";
+    String NEGATIVE_INFINITY = "-.Inf";
     String NULL = "Null";
     String KEY_VALUE_PAIR_SEPARATOR = ": ";
     String MULTI_LINE_NEWLINE_PRESERVING_STRING = " |";
@@ -25,12 +27,19 @@ public interface Constants {
 
     String TYPE_COERSION_INDICATOR = "!!";
 
+    String ANCHOR_PREFIX = "&";
+    String ALIAS_PREFIX = "*";
+    String MERGE_KEY = "<<";
+
     String ARRAY_START = "[";
-    String ARRAY_END = "[";
+    String ARRAY_END = "]";
 
     String MAP_START = "{";
     String MAP_END = "}";
 
+    String FLOW_SEPARATOR = ",";
+    String FLOW_ELEMENT_SEPARATOR = ", ";
+
     Set<String> INVALID_KEY_CHARS = Set.of("-", "[", "]", "{", "}");
 
     static String quoteString(String value) {
@@ -41,6 +50,39 @@ public interface Constants {
         return value;
     }
 
+    static String quoteFlowString(String value) {
+        if (!value.isEmpty() && value.equals(value.strip())
+                && !TypeCoersion.isTrue(value) && !TypeCoersion.isFalse(value) && !TypeCoersion.isNull(value) && !TypeCoersion.isNumber(value)
+                && value.chars().noneMatch(c -> ",[]{}:#\"'\\\n\r\t".indexOf(c) != -1)) {
+            return value;
+        }
+        return doubleQuote(value);
+    }
+
+    /**
+     * Writes the value as a double quoted scalar, escaping quotes, backslashes and control characters.
+     */
+    static String doubleQuote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append(DOUBLE_QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"', '\\' -> builder.append('\\').append(c);
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < ' ' || c == 0x7F) {
+                        builder.append(String.format("\\x%02x", (int)c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append(DOUBLE_QUOTE).toString();
+    }
+
     static String quoteKey(String key) {
         if (key.indexOf(' ') != -1 || key.indexOf('?') != -1) {
             return DOUBLE_QUOTE + key + DOUBLE_QUOTE;
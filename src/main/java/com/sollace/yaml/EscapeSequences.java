@@ -1,64 +1,82 @@
 package com.sollace.yaml;
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-
 import org.jetbrains.annotations.Nullable;
 
-import com.sollace.yaml.util.ByteList;
-
 public class EscapeSequences {
-    public record Codepoint(char character, @Nullable String remainder) {
-        static final Codepoint NEWLINE = new Codepoint('\n', null);
-        static final Codepoint TAB = new Codepoint('\t', null);
-        static final Codepoint BREAK = new Codepoint('\b', null);
-        static final Codepoint LINE_FEED = new Codepoint('\f', null);
-        static final Codepoint NULL = new Codepoint('\0', null);
-    }
+    public record Codepoint(char character, @Nullable String remainder) {}
 
-    public static Codepoint getCodepoint(String s) {
-        return switch (s.length()) {
-            case 0 -> throw new IllegalArgumentException("Empty escape sequence");
-            case 1 -> switch(s.charAt(0)) {
-                case 'r', 'n' -> Codepoint.NEWLINE;
-                case 't' -> Codepoint.TAB;
-                case 'b' -> Codepoint.BREAK;
-                case 'f' -> Codepoint.LINE_FEED;
-                case '0' -> Codepoint.NULL;
-                case '1', '2', '3', '4', '5', '6', '7', '8', '9' -> new Codepoint((char)Character.digit(s.charAt(0), 10), null);
-                default -> new Codepoint(s.charAt(0), null);
-            };
-            default -> switch(s.charAt(0)) {
-                case 'u' -> parseUnicodeSequence(s);
-                default -> new Codepoint(s.charAt(0), null);
-            };
+    /**
+     * Returns the character a single character escape stands for, or -1 if there is no such escape.
+     */
+    public static int unescape(char c) {
+        return switch (c) {
+            case '0' -> '\0';
+            case 'a' -> 0x07;
+            case 'b' -> '\b';
+            case 't', '\t' -> '\t';
+            case 'n' -> '\n';
+            case 'v' -> 0x0B;
+            case 'f' -> '\f';
+            case 'r' -> '\r';
+            case 'e' -> 0x1B;
+            case ' ' -> ' ';
+            case '"' -> '"';
+            case '/' -> '/';
+            case '\\' -> '\\';
+            case 'N' -> 0x85;
+            case '_' -> 0xA0;
+            case 'L' -> 0x2028;
+            case 'P' -> 0x2029;
+            default -> -1;
         };
     }
 
-    private static Codepoint parseUnicodeSequence(String s) {
-        ByteList bytes = new ByteList(8);
-        StringBuffer currentByte = new StringBuffer(4);
-        int i = 0;
-        for (; i < s.length(); i++) {
-            char c = Character.toUpperCase(s.charAt(i));
-            if (c == 'u') {
-                for (int j = 0; j < 4 && i < s.length(); j++, i++) {
-                    if (Character.isDigit(c) || (c == 'A' || c == 'B' || c == 'C' || c == 'D' || c == 'E' || c == 'F')) {
-                        currentByte.append(c);
-                    } else {
-                        break;
-                    }
-                }
+    /**
+     * Returns how many hex digits follow the x, u and U escapes, or 0 for any other escape.
+     */
+    public static int hexDigits(char c) {
+        return switch (c) {
+            case 'x' -> 2;
+            case 'u' -> 4;
+            case 'U' -> 8;
+            default -> 0;
+        };
+    }
 
-                bytes.add(Byte.parseByte(currentByte.toString(), 16));
-                currentByte.setLength(0);
+    /**
+     * Decodes the escape sequence at the start of the text following a backslash.
+     * Code points outside the basic multilingual plane are returned as their high surrogate,
+     * with the low surrogate at the start of the remainder.
+     */
+    public static Codepoint getCodepoint(String s) {
+        if (s.isEmpty()) {
+            throw new IllegalArgumentException("Empty escape sequence");
+        }
+        char c = s.charAt(0);
+        int digits = hexDigits(c);
+        if (digits == 0) {
+            int value = unescape(c);
+            if (value == -1) {
+                throw new IllegalArgumentException("Unknown escape sequence \\" + c);
             }
+            return new Codepoint((char)value, s.length() > 1 ? s.substring(1) : null);
         }
 
-        if (!currentByte.isEmpty() || bytes.length() == 0) {
-            throw new NumberFormatException("Invalid unicode sequence " + s);
+        int codepoint = 0;
+        for (int i = 1; i <= digits; i++) {
+            int digit = i < s.length() ? Character.digit(s.charAt(i), 16) : -1;
+            if (digit == -1) {
+                throw new IllegalArgumentException("Invalid escape sequence \\" + s.substring(0, Math.min(s.length(), digits + 1)));
+            }
+            codepoint = codepoint << 4 | digit;
         }
-
-        return new Codepoint(StandardCharsets.UTF_16.decode(ByteBuffer.wrap(bytes.toArray())).get(), s.substring(i));
+        if (!Character.isValidCodePoint(codepoint)) {
+            throw new IllegalArgumentException("Invalid code point \\" + s.substring(0, digits + 1));
+        }
+        String remainder = s.substring(digits + 1);
+        if (Character.isBmpCodePoint(codepoint)) {
+            return new Codepoint((char)codepoint, remainder.isEmpty() ? null : remainder);
+        }
+        return new Codepoint(Character.highSurrogate(codepoint), Character.lowSurrogate(codepoint) + remainder);
     }
 }
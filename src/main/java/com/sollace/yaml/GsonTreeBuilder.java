@@ -0,0 +1,120 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Builds the gson tree returned by YamlReader's own read methods.
+ */
+final class GsonTreeBuilder implements YamlTreeBuilder<JsonElement> {
+    static final GsonTreeBuilder EAGER = new GsonTreeBuilder(false);
+    // numbers keep their text and are only parsed once they are used
+    static final GsonTreeBuilder LAZY = new GsonTreeBuilder(true);
+
+    private final boolean lazyScalars;
+
+    private GsonTreeBuilder(boolean lazyScalars) {
+        this.lazyScalars = lazyScalars;
+    }
+
+    @Override
+    public JsonElement startMapping() {
+        return new JsonObject();
+    }
+
+    @Override
+    public void put(JsonElement mapping, String key, JsonElement value) {
+        ((JsonObject)mapping).add(key, value);
+    }
+
+    @Override
+    public JsonElement endMapping(JsonElement mapping) {
+        return mapping;
+    }
+
+    @Override
+    public JsonElement startSequence() {
+        return new JsonArray();
+    }
+
+    @Override
+    public void add(JsonElement sequence, JsonElement value) {
+        ((JsonArray)sequence).add(value);
+    }
+
+    @Override
+    public JsonElement endSequence(JsonElement sequence) {
+        return sequence;
+    }
+
+    @Override
+    public JsonElement scalar(ScalarKind kind, String text) {
+        if (kind != ScalarKind.PLAIN) {
+            return new JsonPrimitive(text);
+        }
+        return lazyScalars ? TypeCoersion.lazyValueOf(text) : TypeCoersion.valueOf(text);
+    }
+
+    @Override
+    public JsonElement number(Number value) {
+        return new JsonPrimitive(value);
+    }
+
+    @Override
+    public JsonElement bool(boolean value) {
+        return new JsonPrimitive(value);
+    }
+
+    @Override
+    public JsonElement nullValue() {
+        return JsonNull.INSTANCE;
+    }
+
+    @Override
+    public <V> JsonElement tagged(YamlTag<V> tag, V value) {
+        if (value instanceof Number number) {
+            return new JsonPrimitive(number);
+        }
+        if (value instanceof Boolean bool) {
+            return new JsonPrimitive(bool);
+        }
+        if (value instanceof String string) {
+            return new JsonPrimitive(string);
+        }
+        return YamlTreeBuilder.super.tagged(tag, value);
+    }
+
+    @Override
+    public int merge(JsonElement mapping, JsonElement value) throws IOException {
+        if (value.isJsonArray()) {
+            int added = 0;
+            for (JsonElement element : value.getAsJsonArray()) {
+                added += merge(mapping, element);
+            }
+            return added;
+        }
+        if (!value.isJsonObject()) {
+            throw new IOException("Merge keys require a map or sequence of maps but got " + value);
+        }
+        JsonObject json = (JsonObject)mapping;
+        int added = 0;
+        // keys already present in the mapping take precedence, ones that appear afterwards replace the merged value
+        for (var entry : value.getAsJsonObject().entrySet()) {
+            if (!json.has(entry.getKey())) {
+                json.add(entry.getKey(), entry.getValue());
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public JsonElement alias(JsonElement anchored) {
+        return anchored.deepCopy();
+    }
+}
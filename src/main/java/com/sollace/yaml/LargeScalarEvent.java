@@ -0,0 +1,89 @@
+package com.sollace.yaml;
+
+import java.util.Set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingControl;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+
+@Name("com.sollace.yaml.LargeScalar")
+@Label("YAML Large Scalar")
+@Category("YAML")
+@Description("A scalar at least as long as the configured minimum length")
+@StackTrace(false)
+class LargeScalarEvent extends jdk.jfr.Event {
+    static final int PREVIEW_LENGTH = 64;
+
+    @Label("Length")
+    int length;
+
+    @Label("Style")
+    String style;
+
+    @Label("Preview")
+    String preview;
+
+    @Label("Minimum Length")
+    @Name("minLength")
+    @SettingDefinition
+    boolean minLength(MinLengthSetting setting) {
+        return length >= setting.minLength;
+    }
+
+    static void check(String value, String style) {
+        LargeScalarEvent event = new LargeScalarEvent();
+        if (event.isEnabled()) {
+            event.length = value.length();
+            if (event.shouldCommit()) {
+                event.style = style;
+                event.preview = preview(value);
+                event.commit();
+            }
+        }
+    }
+
+    static String preview(String value) {
+        return value.length() <= PREVIEW_LENGTH ? value : value.substring(0, PREVIEW_LENGTH) + "...";
+    }
+
+    /**
+     * The minimum scalar length, in characters, set through a recording's settings. eg. com.sollace.yaml.LargeScalar#minLength=4096
+     */
+    public static final class MinLengthSetting extends SettingControl {
+        private static final int DEFAULT = 65536;
+
+        private volatile int minLength = DEFAULT;
+
+        @Override
+        public String combine(Set<String> values) {
+            // concurrent recordings get the events any of them asked for
+            int min = Integer.MAX_VALUE;
+            for (String value : values) {
+                min = Math.min(min, parse(value));
+            }
+            return Integer.toString(min == Integer.MAX_VALUE ? DEFAULT : min);
+        }
+
+        @Override
+        public void setValue(String value) {
+            minLength = parse(value);
+        }
+
+        @Override
+        public String getValue() {
+            return Integer.toString(minLength);
+        }
+
+        private static int parse(String value) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return DEFAULT;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sollace.yaml;
+
+import org.jetbrains.annotations.Nullable;
+
+public final class LazyNumber extends Number {
+    private static final long serialVersionUID = 1L;
+
+    private final String text;
+
+    @Nullable
+    private transient Number value;
+
+    public LazyNumber(String text) {
+        this.text = text;
+    }
+
+    public String getRawText() {
+        return text;
+    }
+
+    Number resolve() {
+        if (value == null) {
+            value = TypeCoersion.parseNumber(text);
+        }
+        return value;
+    }
+
+    @Override
+    public int intValue() {
+        return resolve().intValue();
+    }
+
+    @Override
+    public long longValue() {
+        return resolve().longValue();
+    }
+
+    @Override
+    public float floatValue() {
+        return resolve().floatValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        return resolve().doubleValue();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this || (obj instanceof LazyNumber other && text.equals(other.text));
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return resolve().toString();
+    }
+}
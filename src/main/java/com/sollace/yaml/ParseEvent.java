@@ -0,0 +1,31 @@
+package com.sollace.yaml;
+
+import org.jetbrains.annotations.Nullable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.sollace.yaml.Parse")
+@Label("YAML Parse")
+@Category("YAML")
+@Description("A yaml document read by YamlReader, including time spent by callers handling each entry when it is read entry by entry")
+@StackTrace(true)
+class ParseEvent extends jdk.jfr.Event {
+    @Label("Source")
+    @Nullable
+    String source;
+
+    @Label("Characters")
+    long characters;
+
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Failure")
+    @Description("The message of the error that stopped the read, or null if it succeeded")
+    @Nullable
+    String failure;
+}
@@ -0,0 +1,135 @@
+package com.sollace.yaml;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.sollace.yaml.YamlTreeBuilder.ScalarKind;
+
+/**
+ * Tracks the elements already added to a !!set.
+ *
+ * Scalars are compared by the kind they resolve to and the text they were read from, so 1 and 1.0 are different
+ * elements while a quoted and a plain string with the same text are not. Aliases of an element already added are
+ * recognised as the same node. Maps and sequences are bucketed by a structural hash that is computed once per subtree,
+ * so deep comparisons only happen between elements that collide, and the scalars inside them compare with equals().
+ * Nodes made by other tree builders that aren't read from text are compared with equals().
+ */
+final class SetDeduplicator {
+    private final Set<String> scalars = new HashSet<>();
+    private final Map<Object, String> scalarKeys = new IdentityHashMap<>();
+    private final Map<Integer, List<JsonElement>> structures = new HashMap<>();
+    private final Map<JsonElement, Integer> hashes = new IdentityHashMap<>();
+    private final Set<Object> nodes = new HashSet<>();
+
+    /**
+     * Adds an element, returning false if it was already in the set.
+     *
+     * @param scalarKey the key of the scalar it was read from, or null if it wasn't read from one
+     */
+    public boolean add(@Nullable Object node, @Nullable String scalarKey) {
+        if (scalarKey == null && node != null) {
+            scalarKey = scalarKeys.get(node);
+        }
+        if (scalarKey != null) {
+            scalarKeys.put(node, scalarKey);
+            return scalars.add(scalarKey);
+        }
+        if (!(node instanceof JsonElement value)) {
+            return nodes.add(node);
+        }
+        if (!value.isJsonObject() && !value.isJsonArray()) {
+            return scalars.add(valueKey(value));
+        }
+
+        List<JsonElement> bucket = structures.computeIfAbsent(hash(value), h -> new ArrayList<>(1));
+        for (JsonElement existing : bucket) {
+            if (existing.equals(value)) {
+                return false;
+            }
+        }
+        bucket.add(value);
+        return true;
+    }
+
+    private int hash(JsonElement element) {
+        if (!element.isJsonObject() && !element.isJsonArray()) {
+            return valueKey(element).hashCode();
+        }
+
+        Integer known = hashes.get(element);
+        if (known != null) {
+            return known;
+        }
+
+        int hash;
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            hash = 1;
+            for (int i = 0; i < array.size(); i++) {
+                hash = 31 * hash + hash(array.get(i));
+            }
+        } else {
+            // maps compare without regard to key order
+            hash = 7;
+            for (var entry : element.getAsJsonObject().entrySet()) {
+                hash += entry.getKey().hashCode() ^ hash(entry.getValue());
+            }
+        }
+        hashes.put(element, hash);
+        return hash;
+    }
+
+    /**
+     * Keys a scalar by the text it was read from, or by its value if it was tagged as a number or boolean.
+     * Plain scalars are keyed by what they resolve to, and null and the booleans have only one key each however they are written.
+     */
+    static String scalarKey(ScalarKind kind, Object source) {
+        if (source instanceof Number number) {
+            return "n" + number;
+        }
+        if (source instanceof Boolean bool) {
+            return bool ? "b1" : "b0";
+        }
+        String text = (String)source;
+        if (kind != ScalarKind.PLAIN) {
+            return "s" + text;
+        }
+        if (TypeCoersion.isNull(text)) {
+            return "~";
+        }
+        if (TypeCoersion.isTrue(text)) {
+            return "b1";
+        }
+        if (TypeCoersion.isFalse(text)) {
+            return "b0";
+        }
+        return (TypeCoersion.isNumber(text) ? "n" : "s") + text;
+    }
+
+    // keys a scalar by its value when its text isn't known, matching equals() for the scalars inside maps and sequences
+    private static String valueKey(JsonElement element) {
+        if (element.isJsonNull()) {
+            return "~";
+        }
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean() ? "b1" : "b0";
+        }
+        if (primitive.isNumber()) {
+            double value = primitive.getAsDouble();
+            // 0.0 and -0.0 are the same set element
+            return "n" + (value == 0 ? 0D : value);
+        }
+        return "s" + primitive.getAsString();
+    }
+}
@@ -46,6 +46,11 @@ public class Test {
                         }
                         break;
                     }
+                    case "transcode": {
+                        Transcoder.transcode(Path.of(line[1]), Path.of(line[2]));
+                        System.out.println("Wrote " + line[2]);
+                        break;
+                    }
                     case "write": {
                         String path = line[1];
                         try (var writer = new YamlWriter(Files.newBufferedWriter(Path.of(path)))) {
@@ -0,0 +1,147 @@
+package com.sollace.yaml;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * !!timestamp, read field by field in one pass over the text.
+ *
+ * Accepts 2001-12-14, 2001-12-14t21:59:43.10-05:00 and 2001-12-14 21:59:43.10 -5 and the like.
+ */
+final class TimestampTag implements YamlTag<Instant> {
+    @Override
+    public String name() {
+        return "timestamp";
+    }
+
+    @Override
+    public Instant decode(CharSequence text) {
+        try {
+            return new Parser(text).parse();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void encode(Instant value, StringBuilder out) {
+        out.append(value);
+    }
+
+    private static final class Parser {
+        private final CharSequence text;
+        private int index;
+        private final int end;
+
+        Parser(CharSequence text) {
+            this.text = text;
+            int start = 0;
+            int end = text.length();
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            this.index = start;
+            this.end = end;
+        }
+
+        Instant parse() {
+            int year = digits(4, 4);
+            expect('-');
+            int month = digits(1, 2);
+            expect('-');
+            int day = digits(1, 2);
+            if (index == end) {
+                return LocalDateTime.of(year, month, day, 0, 0).toInstant(ZoneOffset.UTC);
+            }
+
+            if (text.charAt(index) == 'T' || text.charAt(index) == 't') {
+                index++;
+            } else if (skipSpaces() == 0) {
+                throw invalid();
+            }
+            int hour = digits(1, 2);
+            expect(':');
+            int minute = digits(2, 2);
+            expect(':');
+            int second = digits(2, 2);
+            int nanos = 0;
+            if (index < end && text.charAt(index) == '.') {
+                index++;
+                int start = index;
+                for (; index < end && isDigit(text.charAt(index)); index++) {
+                    // digits past nanosecond precision are dropped
+                    if (index - start < 9) {
+                        nanos = nanos * 10 + (text.charAt(index) - '0');
+                    }
+                }
+                if (index == start) {
+                    throw invalid();
+                }
+                for (int i = index - start; i < 9; i++) {
+                    nanos *= 10;
+                }
+            }
+
+            skipSpaces();
+            ZoneOffset offset = ZoneOffset.UTC;
+            if (index < end) {
+                char c = text.charAt(index++);
+                if (c == '+' || c == '-') {
+                    int hours = digits(1, 2);
+                    int minutes = 0;
+                    if (index < end && text.charAt(index) == ':') {
+                        index++;
+                        minutes = digits(2, 2);
+                    }
+                    offset = c == '-' ? ZoneOffset.ofHoursMinutes(-hours, -minutes) : ZoneOffset.ofHoursMinutes(hours, minutes);
+                } else if (c != 'Z' && c != 'z') {
+                    throw invalid();
+                }
+            }
+            if (index != end) {
+                throw invalid();
+            }
+            return LocalDateTime.of(year, month, day, hour, minute, second, nanos).toInstant(offset);
+        }
+
+        private int digits(int min, int max) {
+            int start = index;
+            int value = 0;
+            while (index < end && index - start < max && isDigit(text.charAt(index))) {
+                value = value * 10 + (text.charAt(index++) - '0');
+            }
+            if (index - start < min) {
+                throw invalid();
+            }
+            return value;
+        }
+
+        private void expect(char c) {
+            if (index >= end || text.charAt(index) != c) {
+                throw invalid();
+            }
+            index++;
+        }
+
+        private int skipSpaces() {
+            int start = index;
+            while (index < end && (text.charAt(index) == ' ' || text.charAt(index) == '\t')) {
+                index++;
+            }
+            return index - start;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private IllegalArgumentException invalid() {
+            return new IllegalArgumentException("Not a date or date and time: " + text);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Converts between yaml and json without building the whole document in memory.
+ *
+ * Yaml is written out as json node by node while it is being read, and json is written out as yaml the same way.
+ * Both streams are closed once the conversion has finished.
+ *
+ * Only anchored nodes, merge key values and the elements of a !!set are held in memory, as the reader needs them again.
+ * Entries pulled in through a merge key are held until their mapping ends, and only the ones the mapping doesn't set
+ * directly are written, after all of its other entries.
+ */
+public class Transcoder {
+    private static final int FLUSH_INTERVAL = 4096;
+
+    public static void transcode(Path from, Path to) throws IOException {
+        if (from.getFileName().toString().endsWith(".json")) {
+            jsonToYaml(Files.newBufferedReader(from), Files.newBufferedWriter(to));
+        } else {
+            yamlToJson(Files.newBufferedReader(from), Files.newBufferedWriter(to));
+        }
+    }
+
+    public static void yamlToJson(Reader in, Writer out) throws IOException {
+        try (YamlReader reader = new YamlReader(in); JsonWriter writer = new JsonWriter(out)) {
+            writer.setSerializeNulls(true);
+            writer.setLenient(true);
+            reader.readDocument(new StreamingBuilder(writer));
+        }
+    }
+
+    public static void jsonToYaml(Reader in, Writer out) throws IOException {
+        try (JsonReader reader = new JsonReader(in)) {
+            reader.setLenient(true);
+
+            YamlWriter yaml = new YamlWriter(out);
+            yaml.setAlignValues(false);
+            YamlJsonWriter writer = new YamlJsonWriter(yaml);
+            writer.setSerializeNulls(true);
+
+            for (int events = 1;; events++) {
+                switch (reader.peek()) {
+                    case BEGIN_OBJECT -> {
+                        reader.beginObject();
+                        writer.beginObject();
+                    }
+                    case END_OBJECT -> {
+                        reader.endObject();
+                        writer.endObject();
+                    }
+                    case BEGIN_ARRAY -> {
+                        reader.beginArray();
+                        writer.beginArray();
+                    }
+                    case END_ARRAY -> {
+                        reader.endArray();
+                        writer.endArray();
+                    }
+                    case NAME -> writer.name(reader.nextName());
+                    case STRING -> writer.value(reader.nextString());
+                    case NUMBER -> {
+                        String number = reader.nextString();
+                        writer.value(TypeCoersion.isNumberLiteral(number) ? new LazyNumber(number) : Double.valueOf(number));
+                    }
+                    case BOOLEAN -> writer.value(reader.nextBoolean());
+                    case NULL -> {
+                        reader.nextNull();
+                        writer.nullValue();
+                    }
+                    case END_DOCUMENT -> {
+                        writer.close();
+                        return;
+                    }
+                }
+
+                if (events % FLUSH_INTERVAL == 0) {
+                    yaml.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes collections to the json writer as the reader starts and ends them, and scalars as they are added.
+     * Nodes the reader retains are built as gson trees instead and written out whole once they are added to a written collection.
+     */
+    private static final class StreamingBuilder implements YamlTreeBuilder<Object> {
+        // stands in for collections that have been written rather than built
+        private static final Object WRITTEN = new Object();
+
+        /**
+         * A mapping that is being written. Its keys are kept until it ends so that merged entries can be left out when the mapping
+         * sets them itself, whether before or after the merge key.
+         */
+        private static final class WrittenMapping {
+            private final Set<String> keys = new HashSet<>();
+            @Nullable
+            private JsonObject merged;
+        }
+
+        private final JsonWriter writer;
+        private int retained;
+
+        StreamingBuilder(JsonWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public Object startMapping() throws IOException {
+            if (retained > 0) {
+                return GsonTreeBuilder.EAGER.startMapping();
+            }
+            writer.beginObject();
+            return new WrittenMapping();
+        }
+
+        @Override
+        public void key(Object mapping, String key) throws IOException {
+            if (mapping instanceof WrittenMapping written) {
+                written.keys.add(key);
+                if (written.merged != null) {
+                    written.merged.remove(key);
+                }
+                writer.name(key);
+            }
+        }
+
+        @Override
+        public void put(Object mapping, String key, Object value) throws IOException {
+            if (!(mapping instanceof WrittenMapping)) {
+                GsonTreeBuilder.EAGER.put((JsonElement)mapping, key, (JsonElement)value);
+            } else if (value != WRITTEN) {
+                Streams.write((JsonElement)value, writer);
+            }
+        }
+
+        @Override
+        public Object endMapping(Object mapping) throws IOException {
+            if (!(mapping instanceof WrittenMapping written)) {
+                return mapping;
+            }
+            if (written.merged != null) {
+                for (var entry : written.merged.entrySet()) {
+                    writer.name(entry.getKey());
+                    Streams.write(entry.getValue(), writer);
+                }
+            }
+            writer.endObject();
+            return WRITTEN;
+        }
+
+        @Override
+        public Object startSequence() throws IOException {
+            if (retained > 0) {
+                return GsonTreeBuilder.EAGER.startSequence();
+            }
+            writer.beginArray();
+            return WRITTEN;
+        }
+
+        @Override
+        public void add(Object sequence, Object value) throws IOException {
+            if (sequence != WRITTEN) {
+                GsonTreeBuilder.EAGER.add((JsonElement)sequence, (JsonElement)value);
+            } else if (value != WRITTEN) {
+                Streams.write((JsonElement)value, writer);
+            }
+        }
+
+        @Override
+        public Object endSequence(Object sequence) throws IOException {
+            if (sequence == WRITTEN) {
+                writer.endArray();
+            }
+            return sequence;
+        }
+
+        @Override
+        public Object scalar(ScalarKind kind, String text) {
+            return GsonTreeBuilder.EAGER.scalar(kind, text);
+        }
+
+        @Override
+        public Object number(Number value) {
+            return GsonTreeBuilder.EAGER.number(value);
+        }
+
+        @Override
+        public Object bool(boolean value) {
+            return GsonTreeBuilder.EAGER.bool(value);
+        }
+
+        @Override
+        public Object nullValue() {
+            return GsonTreeBuilder.EAGER.nullValue();
+        }
+
+        @Override
+        public <V> Object tagged(YamlTag<V> tag, V value) {
+            return GsonTreeBuilder.EAGER.tagged(tag, value);
+        }
+
+        @Override
+        public int merge(Object mapping, Object value) throws IOException {
+            if (!(mapping instanceof WrittenMapping written)) {
+                return GsonTreeBuilder.EAGER.merge((JsonElement)mapping, (JsonElement)value);
+            }
+            JsonObject merged = new JsonObject();
+            GsonTreeBuilder.EAGER.merge(merged, (JsonElement)value);
+            if (written.merged == null) {
+                written.merged = new JsonObject();
+            }
+            int added = 0;
+            for (var entry : merged.entrySet()) {
+                if (!written.keys.contains(entry.getKey()) && !written.merged.has(entry.getKey())) {
+                    written.merged.add(entry.getKey(), entry.getValue());
+                    added++;
+                }
+            }
+            return added;
+        }
+
+        @Override
+        public void beginRetained() {
+            retained++;
+        }
+
+        @Override
+        public Object endRetained(Object node) {
+            retained--;
+            return node;
+        }
+    }
+}
@@ -32,21 +32,91 @@ public class TypeCoersion {
         }
 
         if (isNumber(s)) {
-            int radix = getRadix(s);
-            if (radix != 10) {
-                s = s.replaceFirst("0[xoXO]", "");
-                return new JsonPrimitive(Integer.valueOf(s.toLowerCase(Locale.ROOT), radix));
-            }
-
             if (isInf(s)) {
                 return s.charAt(0) == '-' ? NEGATIVE_INFINITY : POSITIVE_INFINITY;
             }
-            return isNan(s) ? NAN : new JsonPrimitive(Double.valueOf(s));
+            return isNan(s) ? NAN : new JsonPrimitive(parseNumber(s));
         }
 
         return new JsonPrimitive(s);
     }
 
+    public static JsonElement lazyValueOf(String s) {
+        String text = s.trim();
+        if (isNumberLiteral(text)) {
+            return new JsonPrimitive(new LazyNumber(text));
+        }
+        // null and boolean literals are all five characters or fewer
+        if (text.length() <= 5) {
+            return valueOf(text);
+        }
+        return new JsonPrimitive(s);
+    }
+
+    public static Number parseNumber(String s) {
+        int radix = getRadix(s);
+        if (radix != 10) {
+            return Integer.valueOf(stripRadixPrefix(s).toLowerCase(Locale.ROOT), radix);
+        }
+        return parseDouble(s);
+    }
+
+    static boolean isNumberLiteral(String s) {
+        int start = 0;
+        int end = s.length();
+        if (start < end && (s.charAt(start) == '+' || s.charAt(start) == '-')) {
+            start++;
+        }
+        if (start >= end) {
+            return false;
+        }
+
+        char c = s.charAt(start);
+        if (c == '.') {
+            return end - start == 4 && (s.regionMatches(true, start, ".inf", 0, 4) || s.regionMatches(true, start, ".nan", 0, 4));
+        }
+
+        if (c == '0' && end - start > 2) {
+            char radix = Character.toLowerCase(s.charAt(start + 1));
+            if (radix == 'x' || radix == 'o') {
+                for (int i = start + 2; i < end; i++) {
+                    if (Character.digit(s.charAt(i), radix == 'x' ? 16 : 8) == -1) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+
+        int i = skipDigits(s, start, end);
+        if (i == start) {
+            return false;
+        }
+        while (i < end && (s.charAt(i) == '_' || s.charAt(i) == ',')) {
+            if (skipDigits(s, i + 1, Math.min(end, i + 4)) != i + 4) {
+                return false;
+            }
+            i += 4;
+        }
+        if (i < end && s.charAt(i) == '.') {
+            i = skipDigits(s, i + 1, end);
+        }
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            if (i + 2 >= end || s.charAt(i + 1) != '+' || skipDigits(s, i + 2, end) != end) {
+                return false;
+            }
+            i = end;
+        }
+        return i == end;
+    }
+
+    private static int skipDigits(String s, int start, int end) {
+        while (start < end && s.charAt(start) >= '0' && s.charAt(start) <= '9') {
+            start++;
+        }
+        return start;
+    }
+
     public static int getRadix(String s) {
         if (isOctal(s)) {
             return 8;
@@ -58,6 +128,10 @@ public class TypeCoersion {
         return 10;
     }
 
+    public static String stripRadixPrefix(String s) {
+        return getRadix(s) == 10 ? s : s.replaceFirst("0[xoXO]", "");
+    }
+
     public static double parseDouble(String s) {
         s = s.toUpperCase(Locale.ROOT).trim();
         if (isInf(s)) {
@@ -0,0 +1,26 @@
+package com.sollace.yaml;
+
+import org.jetbrains.annotations.Nullable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.sollace.yaml.Write")
+@Label("YAML Write")
+@Category("YAML")
+@Description("A yaml document written by YamlWriter, from when the writer was created until it was closed")
+@StackTrace(true)
+class WriteEvent extends jdk.jfr.Event {
+    @Label("Target")
+    @Nullable
+    String target;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Characters")
+    long characters;
+}
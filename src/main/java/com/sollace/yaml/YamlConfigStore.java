@@ -0,0 +1,259 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Holds a parsed config that any number of threads can read without locking.
+ *
+ * Readers look values up by dotted path, with sequence elements addressed by their index (eg. "servers.0.host"),
+ * in whichever snapshot is current when they ask. Updates build a new snapshot that shares every subtree they
+ * don't touch with the old one, and swap it in atomically.
+ */
+public class YamlConfigStore {
+    // paths are usually constants, so their segments are kept rather than split on every lookup
+    private static final int MAX_CACHED_PATHS = 1024;
+
+    private final AtomicReference<CompactObject> snapshot;
+    private final Map<String, String[]> paths = new ConcurrentHashMap<>();
+
+    public YamlConfigStore() {
+        this(CompactObject.EMPTY);
+    }
+
+    public YamlConfigStore(CompactObject snapshot) {
+        this.snapshot = new AtomicReference<>(snapshot);
+    }
+
+    /**
+     * Reads the file and replaces the current snapshot with it.
+     */
+    public CompactObject load(Path file) throws IOException {
+        try (YamlReader reader = new YamlReader(Files.newBufferedReader(file))) {
+            reader.setSource(file.toString());
+            CompactObject loaded = reader.readCompactDocument();
+            snapshot.set(loaded);
+            return loaded;
+        }
+    }
+
+    /**
+     * Returns the current snapshot. It never changes, so a reader that needs several values
+     * to be consistent with each other should read them all from the same snapshot.
+     */
+    public CompactObject snapshot() {
+        return snapshot.get();
+    }
+
+    public void replace(CompactObject snapshot) {
+        this.snapshot.set(snapshot);
+    }
+
+    /**
+     * Applies the update to the current snapshot and swaps in the result.
+     * The update is retried against the newer snapshot if another thread swapped one in first, so it must not have side effects.
+     *
+     * @return the snapshot that was swapped in
+     */
+    public CompactObject update(UnaryOperator<CompactObject> update) {
+        CompactObject current;
+        CompactObject updated;
+        do {
+            current = snapshot.get();
+            updated = update.apply(current);
+        } while (!snapshot.compareAndSet(current, updated));
+        return updated;
+    }
+
+    /**
+     * Sets the value at the path, creating any mappings leading up to it that don't exist yet.
+     */
+    public CompactObject set(String path, JsonElement value) {
+        String[] segments = segments(path);
+        CompactNode.Slot slot = CompactNode.slot(value);
+        return update(root -> (CompactObject)set(root, segments, 0, slot));
+    }
+
+    public CompactObject remove(String path) {
+        String[] segments = segments(path);
+        return update(root -> (CompactObject)remove(root, segments, 0));
+    }
+
+    public boolean has(String path) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        return parent != null && indexIn(parent, segments[segments.length - 1]) != -1;
+    }
+
+    /**
+     * Returns the value at the path as a Boolean, Number, String, CompactObject or CompactArray, or null if there isn't one.
+     */
+    @Nullable
+    public Object get(String path) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        int index = parent == null ? -1 : indexIn(parent, segments[segments.length - 1]);
+        return index == -1 ? null : parent.get(index);
+    }
+
+    @Nullable
+    public String getString(String path) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        int index = parent == null ? -1 : indexIn(parent, segments[segments.length - 1]);
+        return index == -1 ? null : parent.getString(index);
+    }
+
+    @Nullable
+    public CompactObject getObject(String path) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        int index = parent == null ? -1 : indexIn(parent, segments[segments.length - 1]);
+        return index == -1 ? null : parent.getObject(index);
+    }
+
+    @Nullable
+    public CompactArray getArray(String path) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        int index = parent == null ? -1 : indexIn(parent, segments[segments.length - 1]);
+        return index == -1 ? null : parent.getArray(index);
+    }
+
+    public boolean getBoolean(String path, boolean fallback) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        int index = parent == null ? -1 : indexIn(parent, segments[segments.length - 1]);
+        return index == -1 || parent.isNull(index) ? fallback : parent.getBoolean(index);
+    }
+
+    public int getInt(String path, int fallback) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        int index = parent == null ? -1 : indexIn(parent, segments[segments.length - 1]);
+        return index == -1 || parent.isNull(index) ? fallback : parent.getInt(index);
+    }
+
+    public long getLong(String path, long fallback) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        int index = parent == null ? -1 : indexIn(parent, segments[segments.length - 1]);
+        return index == -1 || parent.isNull(index) ? fallback : parent.getLong(index);
+    }
+
+    public double getDouble(String path, double fallback) {
+        String[] segments = segments(path);
+        @Nullable
+        CompactNode parent = parent(snapshot.get(), segments);
+        int index = parent == null ? -1 : indexIn(parent, segments[segments.length - 1]);
+        return index == -1 || parent.isNull(index) ? fallback : parent.getDouble(index);
+    }
+
+    private String[] segments(String path) {
+        @Nullable
+        String[] segments = paths.get(path);
+        if (segments == null) {
+            segments = path.split("\\.");
+            if (paths.size() < MAX_CACHED_PATHS) {
+                paths.put(path, segments);
+            }
+        }
+        return segments;
+    }
+
+    // the node holding the last segment of the path, or null if there isn't one
+    @Nullable
+    private static CompactNode parent(CompactNode node, String[] segments) {
+        for (int i = 0; i < segments.length - 1; i++) {
+            int index = indexIn(node, segments[i]);
+            if (index == -1 || !(node.get(index) instanceof CompactNode child)) {
+                return null;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private static int indexIn(CompactNode node, String segment) {
+        if (node instanceof CompactObject object) {
+            return object.indexOf(segment);
+        }
+        int index = parseIndex(segment);
+        return index < node.size() ? index : -1;
+    }
+
+    private static int parseIndex(String segment) {
+        if (segment.isEmpty() || segment.length() > 9) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    private static CompactNode set(CompactNode node, String[] segments, int i, CompactNode.Slot slot) {
+        String segment = segments[i];
+        if (node instanceof CompactObject object) {
+            if (i == segments.length - 1) {
+                return object.with(segment, slot);
+            }
+            int index = object.indexOf(segment);
+            CompactNode child = index != -1 && object.get(index) instanceof CompactNode existing ? existing : CompactObject.EMPTY;
+            return object.with(segment, CompactNode.slot(set(child, segments, i + 1, slot)));
+        }
+
+        CompactArray array = (CompactArray)node;
+        int index = parseIndex(segment);
+        if (index == -1 || index > array.size()) {
+            throw new IllegalArgumentException("No element " + segment + " in sequence at " + String.join(".", Arrays.copyOf(segments, i)));
+        }
+        if (i == segments.length - 1) {
+            return array.with(index, slot);
+        }
+        CompactNode child = index < array.size() && array.get(index) instanceof CompactNode existing ? existing : CompactObject.EMPTY;
+        return array.with(index, CompactNode.slot(set(child, segments, i + 1, slot)));
+    }
+
+    private static CompactNode remove(CompactNode node, String[] segments, int i) {
+        int index = indexIn(node, segments[i]);
+        if (index == -1) {
+            return node;
+        }
+        if (i == segments.length - 1) {
+            return node instanceof CompactObject object ? object.without(segments[i]) : ((CompactArray)node).without(index);
+        }
+        if (!(node.get(index) instanceof CompactNode child)) {
+            return node;
+        }
+        CompactNode updated = remove(child, segments, i + 1);
+        if (updated == child) {
+            return node;
+        }
+        CompactNode.Slot slot = CompactNode.slot(updated);
+        return node instanceof CompactObject object ? object.with(segments[i], slot) : ((CompactArray)node).with(index, slot);
+    }
+}
@@ -0,0 +1,398 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * An editable view over a yaml file that keeps its original text, comments and formatting.
+ *
+ * Scalars are addressed by dotted paths, with sequence elements addressed by their index (eg. "servers.0.host").
+ * Only the edited scalars are replaced when the document is written back.
+ */
+public class YamlDocument {
+    @Nullable
+    private final Path file;
+
+    // the size and modification time the file had when it was read, so saving can tell if something else has written to it since
+    @Nullable
+    private BasicFileAttributes loaded;
+
+    private String text;
+    private final Map<String, Span> scalars = new LinkedHashMap<>();
+    private final TreeMap<Integer, Edit> edits = new TreeMap<>();
+
+    private YamlDocument(@Nullable Path file, @Nullable BasicFileAttributes loaded, String text) {
+        this.file = file;
+        this.loaded = loaded;
+        this.text = text;
+        index();
+    }
+
+    public static YamlDocument load(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new YamlDocument(file, attributes, Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    public static YamlDocument parse(String text) {
+        return new YamlDocument(null, null, text);
+    }
+
+    public Set<String> paths() {
+        return Collections.unmodifiableSet(scalars.keySet());
+    }
+
+    public boolean has(String path) {
+        return scalars.containsKey(path);
+    }
+
+    @Nullable
+    public String getText(String path) {
+        @Nullable
+        Span span = scalars.get(path);
+        if (span == null) {
+            return null;
+        }
+        @Nullable
+        Edit edit = edits.get(span.start());
+        return edit == null ? text.substring(span.start(), span.end()) : edit.text();
+    }
+
+    /**
+     * Reads the scalar at the path, along with any tag in front of it, eg. "!!str 1" reads as a string.
+     */
+    @Nullable
+    public JsonElement get(String path) throws IOException {
+        @Nullable
+        Span span = scalars.get(path);
+        if (span == null) {
+            return null;
+        }
+        String value = text.substring(span.properties(), span.start()) + getText(path);
+        try (YamlReader reader = new YamlReader(new StringReader(value))) {
+            return reader.readValue();
+        }
+    }
+
+    public void set(String path, String value) {
+        set(path, new JsonPrimitive(value));
+    }
+
+    public void set(String path, Number value) {
+        set(path, new JsonPrimitive(value));
+    }
+
+    public void set(String path, boolean value) {
+        set(path, new JsonPrimitive(value));
+    }
+
+    public void set(String path, JsonPrimitive value) {
+        @Nullable
+        Span span = scalars.get(path);
+        if (span == null) {
+            throw new IllegalArgumentException("No scalar value at " + path);
+        }
+        String replacement = YamlWriter.flowScalar(value);
+        if (replacement.contentEquals(text.subSequence(span.start(), span.end()))) {
+            edits.remove(span.start());
+        } else {
+            edits.put(span.start(), new Edit(span, replacement));
+        }
+    }
+
+    public boolean isModified() {
+        return !edits.isEmpty();
+    }
+
+    public void writeTo(Writer out) throws IOException {
+        out.write(toString());
+    }
+
+    /**
+     * Writes pending edits back to the file this document was loaded from.
+     *
+     * When every edit keeps its byte length only the edited ranges are overwritten, otherwise the whole file
+     * is replaced through a temporary file the same way YamlSaveService writes it, so a crash can't leave it half written.
+     *
+     * @return true if anything was written
+     * @throws IOException if the file has changed size or been modified since it was loaded
+     */
+    public boolean save() throws IOException {
+        if (file == null) {
+            throw new IllegalStateException("Document was not loaded from a file");
+        }
+        if (edits.isEmpty()) {
+            return false;
+        }
+
+        BasicFileAttributes current = Files.readAttributes(file, BasicFileAttributes.class);
+        if (loaded != null && (current.size() != loaded.size() || !current.lastModifiedTime().equals(loaded.lastModifiedTime()))) {
+            throw new IOException(file + " has changed since it was loaded");
+        }
+
+        String updated = toString();
+        if (edits.values().stream().allMatch(edit -> utf8Length(edit.text(), 0, edit.text().length()) == utf8Length(text, edit.span().start(), edit.span().end()))) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                long position = 0;
+                int offset = 0;
+                for (Edit edit : edits.values()) {
+                    position += utf8Length(text, offset, edit.span().start());
+                    write(channel, StandardCharsets.UTF_8.encode(edit.text()), position);
+                    position += utf8Length(text, edit.span().start(), edit.span().end());
+                    offset = edit.span().end();
+                }
+                channel.force(false);
+            }
+        } else {
+            YamlSaveService.writeText(file, out -> out.write(updated));
+        }
+        loaded = Files.readAttributes(file, BasicFileAttributes.class);
+
+        text = updated;
+        edits.clear();
+        index();
+        return true;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static long utf8Length(CharSequence text, int start, int end) {
+        long length = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        if (edits.isEmpty()) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length() + 16 * edits.size());
+        int offset = 0;
+        for (Edit edit : edits.values()) {
+            builder.append(text, offset, edit.span().start()).append(edit.text());
+            offset = edit.span().end();
+        }
+        return builder.append(text, offset, text.length()).toString();
+    }
+
+    private void index() {
+        scalars.clear();
+        Indexer indexer = new Indexer();
+        for (int start = 0; start < text.length(); ) {
+            int end = YamlLines.lineEnd(text, start);
+            indexer.line(start, end);
+            start = YamlLines.nextLine(text, end);
+        }
+    }
+
+    /**
+     * The range of a scalar's text, and where any anchor or tag in front of it starts.
+     */
+    record Span(int properties, int start, int end) {}
+
+    private record Edit(Span span, String text) {}
+
+    private record Frame(int column, String path, boolean sequence, int[] nextIndex) {}
+
+    private final class Indexer {
+        private final List<Frame> frames = new ArrayList<>();
+
+        @Nullable
+        private String pendingPath;
+        private int pendingColumn;
+        private boolean pendingKey;
+
+        // block scalars and multi-line quoted strings are skipped until a line at or below this column
+        private int skipColumn = -1;
+
+        // a plain scalar carries on over following lines indented past this column, so its span is extended to cover them
+        @Nullable
+        private String plainPath;
+        private int plainColumn;
+
+        void line(int start, int end) {
+            int column = YamlLines.indentation(text, start, end);
+            if (skipColumn >= 0) {
+                if (column > skipColumn || YamlLines.skipSpaces(text, start, end) == end) {
+                    return;
+                }
+                skipColumn = -1;
+            }
+            if (plainPath != null) {
+                if (YamlLines.skipSpaces(text, start, end) == end) {
+                    return;
+                }
+                if (text.charAt(start + column) != '#' && (column > plainColumn || isBareLine(start, start + column, end))) {
+                    continuation(start + column, end);
+                    return;
+                }
+                plainPath = null;
+            }
+            if (YamlLines.isBlank(text, start, end)) {
+                return;
+            }
+            if (column == 0 && YamlLines.isDocumentMarker(text, start, end)) {
+                frames.clear();
+                pendingPath = null;
+                plainPath = null;
+                return;
+            }
+            if (text.charAt(start + column) == '%') {
+                return;
+            }
+            entry(start, start + column, YamlLines.commentStart(text, start + column, end));
+        }
+
+        private void entry(int lineStart, int from, int end) {
+            int column = from - lineStart;
+            boolean item = YamlLines.isSequenceItem(text, from, end);
+            @Nullable
+            Frame parent = enter(column, item);
+            if (parent == null) {
+                return;
+            }
+
+            if (item) {
+                String path = child(parent.path(), Integer.toString(parent.nextIndex()[0]++));
+                int rest = YamlLines.skipSpaces(text, from + 1, end);
+                if (YamlLines.isSequenceItem(text, rest, end) || YamlLines.keySeparator(text, rest, end) != -1) {
+                    pending(path, column, false);
+                    entry(lineStart, rest, end);
+                } else {
+                    value(path, column, rest, end, false);
+                }
+                return;
+            }
+
+            int separator = YamlLines.keySeparator(text, from, end);
+            if (separator == -1 || text.charAt(from) == '?') {
+                return;
+            }
+            String path = child(parent.path(), YamlLines.key(text, from, separator));
+            value(path, column, YamlLines.skipSpaces(text, separator + 1, end), end, true);
+        }
+
+        @Nullable
+        private Frame enter(int column, boolean item) {
+            if (pendingPath != null) {
+                String path = pendingPath;
+                pendingPath = null;
+                if (column > pendingColumn || (column == pendingColumn && item && pendingKey)) {
+                    Frame frame = new Frame(column, path, item, new int[1]);
+                    frames.add(frame);
+                    return frame;
+                }
+            }
+
+            while (!frames.isEmpty()) {
+                Frame top = frames.get(frames.size() - 1);
+                if (top.column() > column || (top.column() == column && top.sequence() && !item)) {
+                    frames.remove(frames.size() - 1);
+                } else {
+                    break;
+                }
+            }
+
+            if (frames.isEmpty()) {
+                Frame root = new Frame(column, "", item, new int[1]);
+                frames.add(root);
+                return root;
+            }
+
+            Frame top = frames.get(frames.size() - 1);
+            return top.column() == column && top.sequence() == item ? top : null;
+        }
+
+        private void value(String path, int column, int properties, int end, boolean key) {
+            // anchors and tags come before the value they apply to
+            int from = YamlLineScanner.skipProperties(text, properties, end);
+
+            if (from == end) {
+                pending(path, column, key);
+                return;
+            }
+
+            char c = text.charAt(from);
+            if (YamlLines.isBlockScalarIndicator(text, from, end)) {
+                skipColumn = column;
+            } else if (c == '"' || c == '\'') {
+                int close = YamlLines.closingQuote(text, from, end);
+                if (close == -1) {
+                    skipColumn = column;
+                } else {
+                    scalars.put(path, new Span(properties, from, close + 1));
+                }
+            } else if (c != '*' && c != '[' && c != '{') {
+                scalars.put(path, new Span(properties, from, YamlLines.trimEnd(text, from, end)));
+                // a comment ends the scalar
+                if (end == YamlLines.lineEnd(text, from)) {
+                    plainPath = path;
+                    plainColumn = column;
+                }
+            }
+        }
+
+        // the reader carries a plain scalar on over any line that doesn't start an entry of its own, however far in it is
+        private boolean isBareLine(int lineStart, int from, int end) {
+            return !YamlLines.isSequenceItem(text, from, end)
+                    && !(from == lineStart && YamlLines.isDocumentMarker(text, from, end))
+                    && text.charAt(from) != '%'
+                    && YamlLines.keySeparator(text, from, YamlLines.commentStart(text, from, end)) == -1;
+        }
+
+        private void continuation(int from, int end) {
+            int comment = YamlLines.commentStart(text, from, end);
+            Span span = scalars.get(plainPath);
+            scalars.put(plainPath, new Span(span.properties(), span.start(), YamlLines.trimEnd(text, from, comment)));
+            if (comment != end) {
+                plainPath = null;
+            }
+        }
+
+        private void pending(String path, int column, boolean key) {
+            pendingPath = path;
+            pendingColumn = column;
+            pendingKey = key;
+        }
+
+        private static String child(String path, String key) {
+            return path.isEmpty() ? key : path + "." + key;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.sollace.yaml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * An index of where each path sits in a large yaml file, so single values can be read without parsing everything before them.
+ *
+ * Building the index takes one streaming pass that records the byte range and indentation of every path down to a given depth,
+ * and saves them to a sidecar file next to the yaml. Lookups read just that range with a positional read and parse it on its own.
+ * Paths deeper than the index are read through their nearest indexed parent.
+ *
+ * Values that refer to anchors defined outside of their own range can't be read this way.
+ */
+public final class YamlIndex implements Closeable {
+    private static final int MAGIC = 0x59494458;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int maxDepth;
+
+    private final String[] paths;
+    private final long[] starts;
+    private final long[] ends;
+    private final int[] columns;
+    private final boolean[] items;
+
+    private YamlIndex(Path file, int maxDepth, String[] paths, long[] starts, long[] ends, int[] columns, boolean[] items) throws IOException {
+        this.file = file;
+        this.maxDepth = maxDepth;
+        this.paths = paths;
+        this.starts = starts;
+        this.ends = ends;
+        this.columns = columns;
+        this.items = items;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    public static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * Opens the index for the file, reusing its sidecar if one was built at the same depth since the file last changed.
+     */
+    public static YamlIndex open(Path file, int maxDepth) throws IOException {
+        @Nullable
+        YamlIndex index = readSidecar(file, maxDepth);
+        return index != null ? index : build(file, maxDepth);
+    }
+
+    /**
+     * Scans the file and writes a new sidecar for it.
+     *
+     * @param maxDepth how many path segments deep to index, eg. 1 for only the top-level keys
+     */
+    public static YamlIndex build(Path file, int maxDepth) throws IOException {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1");
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Scanner scanner = new Scanner(maxDepth);
+        scanner.scan(file);
+
+        List<Entry> entries = scanner.entries;
+        // keep the last of any duplicated keys, same as the reader does
+        entries.sort(Comparator.comparing(Entry::path));
+        List<Entry> unique = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            if (i + 1 == entries.size() || !entries.get(i).path().equals(entries.get(i + 1).path())) {
+                unique.add(entries.get(i));
+            }
+        }
+
+        int size = unique.size();
+        String[] paths = new String[size];
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        int[] columns = new int[size];
+        boolean[] items = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Entry entry = unique.get(i);
+            paths[i] = entry.path();
+            starts[i] = entry.start();
+            ends[i] = entry.end();
+            columns[i] = entry.column();
+            items[i] = entry.item();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sidecar(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(attributes.size());
+            out.writeLong(attributes.lastModifiedTime().toMillis());
+            out.writeInt(maxDepth);
+            writeVarLong(out, size);
+            String previous = "";
+            long previousStart = 0;
+            for (int i = 0; i < size; i++) {
+                // paths are sorted, so each one is stored as what it adds to the one before it
+                int shared = sharedPrefix(previous, paths[i]);
+                writeVarLong(out, shared);
+                out.writeUTF(paths[i].substring(shared));
+                writeVarLong(out, zigZag(starts[i] - previousStart));
+                writeVarLong(out, ends[i] - starts[i]);
+                writeVarLong(out, (long)columns[i] << 1 | (items[i] ? 1 : 0));
+                previous = paths[i];
+                previousStart = starts[i];
+            }
+        }
+
+        return new YamlIndex(file, maxDepth, paths, starts, ends, columns, items);
+    }
+
+    @Nullable
+    private static YamlIndex readSidecar(Path file, int maxDepth) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar(file))))) {
+            if (in.readInt() != MAGIC
+                    || in.readInt() != VERSION
+                    || in.readLong() != attributes.size()
+                    || in.readLong() != attributes.lastModifiedTime().toMillis()
+                    || in.readInt() != maxDepth) {
+                return null;
+            }
+            int size = (int)readVarLong(in);
+            String[] paths = new String[size];
+            long[] starts = new long[size];
+            long[] ends = new long[size];
+            int[] columns = new int[size];
+            boolean[] items = new boolean[size];
+            String previous = "";
+            long previousStart = 0;
+            for (int i = 0; i < size; i++) {
+                int shared = (int)readVarLong(in);
+                paths[i] = previous.substring(0, shared) + in.readUTF();
+                starts[i] = previousStart + unZigZag(readVarLong(in));
+                ends[i] = starts[i] + readVarLong(in);
+                long layout = readVarLong(in);
+                columns[i] = (int)(layout >>> 1);
+                items[i] = (layout & 1) != 0;
+                previous = paths[i];
+                previousStart = starts[i];
+            }
+            return new YamlIndex(file, maxDepth, paths, starts, ends, columns, items);
+        } catch (IOException e) {
+            // a missing or damaged sidecar is just rebuilt
+            return null;
+        }
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the indexed paths in sorted order.
+     */
+    public List<String> paths() {
+        return Collections.unmodifiableList(Arrays.asList(paths));
+    }
+
+    /**
+     * Reads the value at the path, or returns null if the file doesn't have one.
+     */
+    @Nullable
+    public JsonElement get(String path) throws IOException {
+        String indexed = path;
+        int index = Arrays.binarySearch(paths, indexed);
+        while (index < 0) {
+            int dot = indexed.lastIndexOf('.');
+            if (dot == -1) {
+                return null;
+            }
+            indexed = indexed.substring(0, dot);
+            index = Arrays.binarySearch(paths, indexed);
+        }
+
+        @Nullable
+        JsonElement value = read(index);
+        if (indexed.length() < path.length()) {
+            for (String segment : path.substring(indexed.length() + 1).split("\\.")) {
+                if (value instanceof JsonObject object) {
+                    value = object.get(segment);
+                } else if (value instanceof JsonArray array) {
+                    int i = parseIndex(segment);
+                    value = i >= 0 && i < array.size() ? array.get(i) : null;
+                } else {
+                    return null;
+                }
+            }
+        }
+        return value;
+    }
+
+    private JsonElement read(int index) throws IOException {
+        long length = ends[index] - starts[index];
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Value at " + paths[index] + " is too large to read on its own");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int)length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, starts[index] + buffer.position()) == -1) {
+                throw new IOException("Index for " + file + " is out of date");
+            }
+        }
+        CharSequence text = StandardCharsets.UTF_8.decode(buffer.flip());
+
+        // the range starts at the key itself, so its indentation is put back for the reader. Items are read as
+        // the value of a placeholder key, shifted one space further in so that they sit below it
+        boolean item = items[index];
+        StringBuilder fragment = new StringBuilder(text.length() + 16);
+        if (item) {
+            fragment.append("_:\n ");
+        }
+        fragment.append(" ".repeat(columns[index]));
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            fragment.append(c);
+            if (item && c == '\n' && i + 1 < text.length() && text.charAt(i + 1) != '\n' && text.charAt(i + 1) != '\r') {
+                fragment.append(' ');
+            }
+        }
+
+        try (YamlReader reader = new YamlReader(new StringReader(fragment.toString()))) {
+            reader.setSource(file.toString());
+            JsonObject document = reader.readDocument();
+            JsonElement value = document.entrySet().iterator().next().getValue();
+            return item ? value.getAsJsonArray().get(0) : value;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int parseIndex(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int sharedPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long)(b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed index");
+    }
+
+    private record Entry(String path, long start, long end, int column, boolean item) {}
+
+    private static final class Node {
+        @Nullable
+        final String path;
+        final int column;
+        final int depth;
+        final long start;
+        final boolean key;
+
+        // whether the value continues on the following lines
+        boolean block;
+        int nextIndex;
+
+        Node(@Nullable String path, int column, int depth, long start, boolean key) {
+            this.path = path;
+            this.column = column;
+            this.depth = depth;
+            this.start = start;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Walks the file line by line, tracking which entries are open from their indentation in the same way as YamlDocument.
+     * Lines are scanned as raw bytes since every character that matters to the structure is ascii, so positions are byte offsets.
+     * Lines inside a quoted scalar, flow collection or block scalar are passed over the same way YamlParallelReader passes them over.
+     */
+    private static final class Scanner {
+        private final int maxDepth;
+        private final YamlLineScanner lines = new YamlLineScanner();
+        private final List<Node> stack = new ArrayList<>();
+        final List<Entry> entries = new ArrayList<>();
+
+        private final ByteLine text = new ByteLine();
+        private long lineOffset;
+        private boolean done;
+
+        Scanner(int maxDepth) {
+            this.maxDepth = maxDepth;
+            Node root = new Node("", -1, 0, 0, false);
+            root.block = true;
+            stack.add(root);
+        }
+
+        void scan(Path file) throws IOException {
+            byte[] chunk = new byte[1 << 16];
+            long position = 0;
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while (!done && (read = in.read(chunk)) != -1) {
+                    int from = 0;
+                    for (int i = 0; i < read && !done; i++) {
+                        if (chunk[i] == '\n') {
+                            text.append(chunk, from, i);
+                            line();
+                            from = i + 1;
+                            lineOffset = position + from;
+                        }
+                    }
+                    if (!done) {
+                        text.append(chunk, from, read);
+                    }
+                    position += read;
+                }
+            }
+            if (!done && text.length() > 0) {
+                line();
+            }
+            while (stack.size() > 1) {
+                close(stack.remove(stack.size() - 1), done ? lineOffset : position);
+            }
+        }
+
+        private void line() {
+            try {
+                int end = YamlLines.lineEnd(text, 0);
+                if (!lines.line(text, 0, end)) {
+                    return;
+                }
+                int column = YamlLines.indentation(text, 0, end);
+                Node top = stack.get(stack.size() - 1);
+                // nothing inside a scalar or below the deepest indexed level can open or close an entry
+                if (column > top.column && (!top.block || top.depth >= maxDepth)) {
+                    return;
+                }
+                if (column == 0 && YamlLines.isDocumentMarker(text, 0, end)) {
+                    while (stack.size() > 1) {
+                        close(stack.remove(stack.size() - 1), lineOffset);
+                    }
+                    // only the first document is indexed
+                    done = !entries.isEmpty();
+                    return;
+                }
+                if (text.charAt(column) == '%') {
+                    return;
+                }
+                entry(column, YamlLines.commentStart(text, column, end));
+            } finally {
+                text.clear();
+            }
+        }
+
+        private void entry(int column, int end) {
+            boolean item = YamlLines.isSequenceItem(text, column, end);
+            @Nullable
+            Node parent = enter(column);
+            if (parent == null) {
+                return;
+            }
+
+            if (item) {
+                Node node = open(parent, Integer.toString(parent.nextIndex++), column, false);
+                int rest = YamlLines.skipSpaces(text, column + 1, end);
+                if (rest < end && (YamlLines.isSequenceItem(text, rest, end) || YamlLines.keySeparator(text, rest, end) != -1)) {
+                    node.block = true;
+                    entry(rest, end);
+                } else {
+                    value(node, rest, end);
+                }
+                return;
+            }
+
+            int separator = YamlLines.keySeparator(text, column, end);
+            if (separator == -1 || text.charAt(column) == '?') {
+                return;
+            }
+            Node node = open(parent, YamlLines.key(text, column, separator), column, true);
+            value(node, YamlLines.skipSpaces(text, separator + 1, end), end);
+        }
+
+        @Nullable
+        private Node enter(int column) {
+            while (stack.size() > 1 && stack.get(stack.size() - 1).column >= column) {
+                close(stack.remove(stack.size() - 1), lineOffset);
+            }
+            Node parent = stack.get(stack.size() - 1);
+            return parent.block ? parent : null;
+        }
+
+        private Node open(Node parent, String segment, int column, boolean key) {
+            int depth = parent.depth + 1;
+            @Nullable
+            String path = depth > maxDepth || parent.path == null || (key && segment.equals(Constants.MERGE_KEY)) ? null
+                    : parent.path.isEmpty() ? segment
+                    : parent.path + "." + segment;
+            Node node = new Node(path, column, depth, lineOffset + column, key);
+            stack.add(node);
+            return node;
+        }
+
+        private void value(Node node, int from, int end) {
+            // anchors and tags come before the value they apply to
+            node.block = YamlLineScanner.skipProperties(text, from, end) == end;
+        }
+
+        private void close(Node node, long end) {
+            if (node.path != null) {
+                entries.add(new Entry(node.path, node.start, end, node.column, !node.key));
+            }
+        }
+    }
+
+    /**
+     * A line of raw utf-8 bytes seen one byte per character. Any slice taken from it is decoded properly.
+     */
+    private static final class ByteLine implements CharSequence {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        void append(byte[] source, int from, int to) {
+            int count = to - from;
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+            System.arraycopy(source, from, bytes, length, count);
+            length += count;
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char)(bytes[index] & 0xFF);
+        }
+
+        @Override
+        public String subSequence(int start, int end) {
+            return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length);
+        }
+    }
+}
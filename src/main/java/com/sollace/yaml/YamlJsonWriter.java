@@ -0,0 +1,253 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Stack;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Adapts a YamlWriter to Gson's streaming api so type adapters can write yaml without building a JsonElement tree first.
+ *
+ * <pre>
+ * gson.toJson(value, type, new YamlJsonWriter(yamlWriter));
+ * </pre>
+ *
+ * Strings that would read back as something else, such as an indicator, a comment or a number, are written double quoted,
+ * and empty objects and arrays are written as {} and [] so they don't read back as null.
+ */
+public class YamlJsonWriter extends JsonWriter {
+    private static final String PLAIN_START_INDICATORS = "-?:,[]{}#&*!|>'\"%@`";
+    private static final String QUOTED_INDICATORS = ":#,[]{}'\"\\";
+
+    private final YamlWriter out;
+
+    private final Stack<Boolean> scopes = new Stack<>();
+
+    @Nullable
+    private String deferredName;
+    // the innermost object or array isn't started until it gets its first value, so an empty one can be written as {} or []
+    private boolean deferredScope;
+
+    public YamlJsonWriter(YamlWriter out) {
+        super(Writer.nullWriter());
+        this.out = out;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        scopes.push(false);
+        deferredScope = true;
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        if (endScope(false)) {
+            out.endObject();
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        scopes.push(true);
+        deferredScope = true;
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        if (endScope(true)) {
+            out.endArray();
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (deferredName != null || scopes.isEmpty() || scopes.peek()) {
+            throw new IllegalStateException("Unexpected name " + name);
+        }
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(@Nullable String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        if (needsQuotes(value)) {
+            out.rawValue(Constants.doubleQuote(value));
+        } else {
+            out.rawValue(value);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter jsonValue(@Nullable String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        out.value(JsonParser.parseString(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (deferredName != null && !getSerializeNulls()) {
+            deferredName = null;
+            return this;
+        }
+        beforeValue();
+        out.nullValue();
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.value(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(@Nullable Boolean value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(float value) throws IOException {
+        beforeValue();
+        out.value(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        out.value(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.value(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(@Nullable Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        if (value instanceof Double || value instanceof Float || value instanceof Long || value instanceof Integer || value instanceof LazyNumber) {
+            out.value(value);
+        } else if (value instanceof Short || value instanceof Byte) {
+            out.value(value.intValue());
+        } else {
+            String text = value.toString();
+            out.value(TypeCoersion.isNumberLiteral(text) ? new LazyNumber(text) : value.doubleValue());
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (deferredName != null || !scopes.isEmpty()) {
+            throw new IOException("Incomplete document");
+        }
+        out.close();
+    }
+
+    private void beforeValue() throws IOException {
+        if (scopes.isEmpty()) {
+            return;
+        }
+        if (deferredScope) {
+            deferredScope = false;
+            if (scopes.peek()) {
+                out.beginArray();
+            } else {
+                out.beginObject();
+            }
+        }
+        if (scopes.peek()) {
+            out.element();
+        } else if (deferredName == null) {
+            throw new IllegalStateException("Expected a name");
+        } else {
+            out.name(deferredName);
+            deferredName = null;
+        }
+    }
+
+    /**
+     * Closes the innermost scope, returning false if it never started and was written as {} or [] instead.
+     */
+    private boolean endScope(boolean array) throws IOException {
+        if (scopes.isEmpty() || scopes.peek() != array || deferredName != null) {
+            throw new IllegalStateException("Nesting problem");
+        }
+        scopes.pop();
+        if (!deferredScope) {
+            return true;
+        }
+        deferredScope = false;
+        if (scopes.isEmpty()) {
+            // an empty document is still started, so it's written the same as before
+            if (array) {
+                out.beginArray();
+            } else {
+                out.beginObject();
+            }
+            return true;
+        }
+        out.rawValue(array ? Constants.ARRAY_START + Constants.ARRAY_END : Constants.MAP_START + Constants.MAP_END);
+        return false;
+    }
+
+    /**
+     * Checks whether a string has to be quoted to read back as the same string, rather than being a plain scalar.
+     */
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty() || !value.equals(value.strip()) || PLAIN_START_INDICATORS.indexOf(value.charAt(0)) != -1) {
+            return true;
+        }
+        // the reader carries on past a quote or bracket in a plain scalar, so those are quoted wherever they are
+        if (value.chars().anyMatch(c -> c < ' ' || c == 0x7F || QUOTED_INDICATORS.indexOf(c) != -1)) {
+            return true;
+        }
+        // and each word is held to the same rules as the start of the scalar, as some indicators end it after a space
+        for (int i = value.indexOf(' '); i != -1; i = value.indexOf(' ', i + 1)) {
+            if (PLAIN_START_INDICATORS.indexOf(value.charAt(i + 1)) != -1) {
+                return true;
+            }
+        }
+        // anything read as a null, boolean or number
+        JsonElement coerced = TypeCoersion.valueOf(value);
+        return !coerced.isJsonPrimitive() || !coerced.getAsJsonPrimitive().isString() || TypeCoersion.isNumberLiteral(value);
+    }
+}
@@ -0,0 +1,37 @@
+package com.sollace.yaml;
+
+/**
+ * Bounds on what a YamlReader will accept.
+ *
+ * Limits are checked while the input is being read, so an oversized document fails as soon as it crosses one
+ * rather than after it has been loaded into memory.
+ *
+ * @param maxCharacters     the longest document, in characters
+ * @param maxDepth          how many collections and anchors may be nested inside each other
+ * @param maxScalarLength   the longest key or value, in characters
+ * @param maxKeys           the most entries a single mapping may have
+ * @param maxSequenceLength the most elements a single sequence may have
+ */
+public record YamlLimits(long maxCharacters, int maxDepth, int maxScalarLength, int maxKeys, int maxSequenceLength) {
+    public static final YamlLimits DEFAULT = new YamlLimits(Long.MAX_VALUE, 1000, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    public YamlLimits withMaxCharacters(long maxCharacters) {
+        return new YamlLimits(maxCharacters, maxDepth, maxScalarLength, maxKeys, maxSequenceLength);
+    }
+
+    public YamlLimits withMaxDepth(int maxDepth) {
+        return new YamlLimits(maxCharacters, maxDepth, maxScalarLength, maxKeys, maxSequenceLength);
+    }
+
+    public YamlLimits withMaxScalarLength(int maxScalarLength) {
+        return new YamlLimits(maxCharacters, maxDepth, maxScalarLength, maxKeys, maxSequenceLength);
+    }
+
+    public YamlLimits withMaxKeys(int maxKeys) {
+        return new YamlLimits(maxCharacters, maxDepth, maxScalarLength, maxKeys, maxSequenceLength);
+    }
+
+    public YamlLimits withMaxSequenceLength(int maxSequenceLength) {
+        return new YamlLimits(maxCharacters, maxDepth, maxScalarLength, maxKeys, maxSequenceLength);
+    }
+}
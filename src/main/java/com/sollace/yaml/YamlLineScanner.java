@@ -0,0 +1,138 @@
+package com.sollace.yaml;
+
+/**
+ * Follows raw yaml text line by line to tell which lines are part of a quoted scalar, flow collection or block scalar
+ * opened on an earlier line, so that callers splitting or indexing a document only look at lines with structure of their own.
+ *
+ * Lines can be passed in as slices of the whole document or one at a time, since nothing is read outside of the given range.
+ */
+final class YamlLineScanner {
+    // the indentation of the line that opened a block scalar, whose content is every deeper or blank line after it
+    private int blockColumn = -1;
+    // the quote of a string or the nesting of a flow collection that carries on to the next line
+    private char quote;
+    private int flowDepth;
+
+    /**
+     * Set once an alias is seen, as a value then depends on another one elsewhere in the document.
+     */
+    boolean alias;
+
+    /**
+     * Scans the next line, returning true if it has structure of its own, or false if it is blank
+     * or continues a scalar or collection from an earlier line.
+     */
+    boolean line(CharSequence text, int start, int end) {
+        if (quote != 0 || flowDepth > 0) {
+            scanFlow(text, start, end);
+            return false;
+        }
+
+        int column = YamlLines.indentation(text, start, end);
+        if (blockColumn >= 0) {
+            if (column > blockColumn || YamlLines.skipSpaces(text, start, end) == end) {
+                return false;
+            }
+            blockColumn = -1;
+        }
+        if (YamlLines.isBlank(text, start, end)) {
+            return false;
+        }
+
+        int from = start + column;
+        end = YamlLines.commentStart(text, from, end);
+        value(text, column, valueStart(text, from, end), end);
+        return true;
+    }
+
+    /**
+     * Skips past any anchors and tags to where the value itself begins.
+     */
+    static int skipProperties(CharSequence text, int from, int end) {
+        while (from < end && (text.charAt(from) == '&' || text.charAt(from) == '!')) {
+            while (from < end && !Character.isWhitespace(text.charAt(from))) {
+                from++;
+            }
+            from = YamlLines.skipSpaces(text, from, end);
+        }
+        return from;
+    }
+
+    // skips past any sequence item markers and key to where the value on this line begins
+    private static int valueStart(CharSequence text, int from, int end) {
+        while (true) {
+            if (YamlLines.isSequenceItem(text, from, end)) {
+                from = YamlLines.skipSpaces(text, from + 1, end);
+                continue;
+            }
+            // the keys of a flow mapping belong to it rather than to this line
+            int value = skipProperties(text, from, end);
+            if (value < end && (text.charAt(value) == '[' || text.charAt(value) == '{')) {
+                return from;
+            }
+            int separator = YamlLines.keySeparator(text, from, end);
+            if (separator == -1) {
+                return from;
+            }
+            from = YamlLines.skipSpaces(text, separator + 1, end);
+        }
+    }
+
+    private void value(CharSequence text, int column, int from, int end) {
+        from = skipProperties(text, from, end);
+        if (from == end) {
+            return;
+        }
+
+        char c = text.charAt(from);
+        if (c == '*') {
+            alias = true;
+        } else if (YamlLines.isBlockScalarIndicator(text, from, end)) {
+            blockColumn = column;
+        } else if (c == '"' || c == '\'') {
+            quote = c;
+            scanFlow(text, from + 1, end);
+        } else if (c == '[' || c == '{') {
+            flowDepth = 1;
+            scanFlow(text, from + 1, end);
+        }
+    }
+
+    // follows quotes and brackets until the string or collection that was opened is closed
+    private void scanFlow(CharSequence text, int from, int end) {
+        for (int i = from; i < end && (quote != 0 || flowDepth > 0); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (quote == '"' && c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    if (quote == '\'' && i + 1 < end && text.charAt(i + 1) == '\'') {
+                        i++;
+                    } else {
+                        quote = 0;
+                    }
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '[' || c == '{') {
+                flowDepth++;
+            } else if (c == ']' || c == '}') {
+                flowDepth--;
+            } else if (c == '*' && isFlowIndicatorBefore(text, i)) {
+                alias = true;
+            } else if (c == '#' && (i == 0 || Character.isWhitespace(text.charAt(i - 1)))) {
+                return;
+            }
+        }
+    }
+
+    private static boolean isFlowIndicatorBefore(CharSequence text, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '[' || c == '{' || c == ',' || c == ':';
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,149 @@
+package com.sollace.yaml;
+
+/**
+ * Line-level helpers for scanning raw yaml text without going through the tokenizer.
+ */
+final class YamlLines {
+    private YamlLines() {}
+
+    static int lineEnd(CharSequence text, int from) {
+        int length = text.length();
+        while (from < length) {
+            char c = text.charAt(from);
+            if (c == '\n' || c == '\r') {
+                return from;
+            }
+            from++;
+        }
+        return length;
+    }
+
+    static int nextLine(CharSequence text, int lineEnd) {
+        if (lineEnd < text.length() && text.charAt(lineEnd) == '\r') {
+            lineEnd++;
+        }
+        if (lineEnd < text.length() && text.charAt(lineEnd) == '\n') {
+            lineEnd++;
+        }
+        return lineEnd;
+    }
+
+    static int indentation(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i - start;
+    }
+
+    static boolean isBlank(CharSequence text, int start, int end) {
+        int i = skipSpaces(text, start, end);
+        return i == end || text.charAt(i) == '#';
+    }
+
+    static int skipSpaces(CharSequence text, int start, int end) {
+        while (start < end && (text.charAt(start) == ' ' || text.charAt(start) == '\t')) {
+            start++;
+        }
+        return start;
+    }
+
+    static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    static boolean isSequenceItem(CharSequence text, int start, int end) {
+        return start < end && text.charAt(start) == '-' && (start + 1 == end || Character.isWhitespace(text.charAt(start + 1)));
+    }
+
+    static boolean isDocumentMarker(CharSequence text, int start, int end) {
+        return end - start >= 3
+                && ((text.charAt(start) == '-' && text.charAt(start + 1) == '-' && text.charAt(start + 2) == '-')
+                 || (text.charAt(start) == '.' && text.charAt(start + 1) == '.' && text.charAt(start + 2) == '.'))
+                && (end - start == 3 || Character.isWhitespace(text.charAt(start + 3)));
+    }
+
+    /**
+     * Returns the index of the quote closing the one at start, or -1 if it is not closed on this line.
+     */
+    static int closingQuote(CharSequence text, int start, int end) {
+        char quote = text.charAt(start);
+        for (int i = start + 1; i < end; i++) {
+            char c = text.charAt(i);
+            if (quote == '"' && c == '\\') {
+                i++;
+            } else if (c == quote) {
+                if (quote == '\'' && i + 1 < end && text.charAt(i + 1) == '\'') {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the comment starting on this line, or end if there is none.
+     */
+    static int commentStart(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if ((c == '"' || c == '\'') && (i == start || !isPlainChar(text.charAt(i - 1)))) {
+                int close = closingQuote(text, i, end);
+                if (close == -1) {
+                    return end;
+                }
+                i = close;
+            } else if (c == '#' && (i == start || Character.isWhitespace(text.charAt(i - 1)))) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the index of the ':' separating a key from its value, or -1 if the line holds no key.
+     */
+    static int keySeparator(CharSequence text, int start, int end) {
+        int i = start;
+        if (i < end && (text.charAt(i) == '"' || text.charAt(i) == '\'')) {
+            i = closingQuote(text, i, end);
+            if (i == -1) {
+                return -1;
+            }
+        }
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '#' && i > start && Character.isWhitespace(text.charAt(i - 1))) {
+                return -1;
+            }
+            if (c == ':' && (i + 1 == end || Character.isWhitespace(text.charAt(i + 1)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static String key(CharSequence text, int start, int separator) {
+        int end = trimEnd(text, start, separator);
+        if (end - start >= 2) {
+            char c = text.charAt(start);
+            if ((c == '"' || c == '\'') && text.charAt(end - 1) == c) {
+                return text.subSequence(start + 1, end - 1).toString();
+            }
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    static boolean isBlockScalarIndicator(CharSequence text, int start, int end) {
+        return start < end && (text.charAt(start) == '|' || text.charAt(start) == '>');
+    }
+
+    private static boolean isPlainChar(char c) {
+        return !Character.isWhitespace(c) && c != '[' && c != '{' && c != ',' && c != ':';
+    }
+}
@@ -0,0 +1,212 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.sollace.yaml.util.IntList;
+
+/**
+ * Reads a single large document on several threads by splitting it between its top-level keys.
+ *
+ * A quick scan over the lines finds the keys at column zero that aren't inside a block scalar, quoted string or flow collection.
+ * Runs of these entries are read by separate YamlReaders on the pool, and the results are merged in the order they appear.
+ * Documents that use aliases or a top-level merge key are read sequentially instead, since their entries depend on each other.
+ */
+public class YamlParallelReader {
+    private final ForkJoinPool pool;
+
+    private int minChunkSize = 64 * 1024;
+    private boolean lazyScalars;
+    private YamlLimits limits = YamlLimits.DEFAULT;
+
+    @Nullable
+    private String source;
+
+    public YamlParallelReader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the fewest characters read by each task. Documents under twice this size are read on the calling thread.
+     */
+    public void setMinChunkSize(int characters) {
+        minChunkSize = Math.max(1, characters);
+    }
+
+    public void setLazyScalars(boolean lazyScalars) {
+        this.lazyScalars = lazyScalars;
+    }
+
+    public void setLimits(YamlLimits limits) {
+        this.limits = limits;
+    }
+
+    public void setSource(@Nullable String source) {
+        this.source = source;
+    }
+
+    public JsonObject readDocument(Path file) throws IOException {
+        if (Files.size(file) > limits.maxCharacters()) {
+            throw new IOException("Document exceeds the limit of " + limits.maxCharacters() + " characters");
+        }
+        return readDocument(Files.readString(file, StandardCharsets.UTF_8), null);
+    }
+
+    public JsonObject readDocument(CharSequence text) throws IOException {
+        return readDocument(text, null);
+    }
+
+    public JsonObject readDocument(CharSequence text, @Nullable YamlSchema schema) throws IOException {
+        String document = text.toString();
+        if (document.length() > limits.maxCharacters()) {
+            throw new IOException("Document exceeds the limit of " + limits.maxCharacters() + " characters");
+        }
+
+        int chunkSize = Math.max(minChunkSize, document.length() / (pool.getParallelism() * 4));
+        @Nullable
+        Chunks chunks = document.length() < chunkSize * 2 || pool.getParallelism() < 2 ? null : split(document, chunkSize);
+        if (chunks == null || chunks.starts.length() == 1) {
+            return read(document, 1, schema);
+        }
+
+        // each part only holds some of the keys, so required keys are checked once they are all together
+        @Nullable
+        YamlSchema partSchema = schema == null ? null : schema.withoutRequiredKeys();
+        List<ForkJoinTask<Part>> tasks = new ArrayList<>(chunks.starts.length());
+        for (int i = 0; i < chunks.starts.length(); i++) {
+            int start = chunks.starts.get(i);
+            int end = i + 1 < chunks.starts.length() ? chunks.starts.get(i + 1) : document.length();
+            int line = chunks.lines.get(i);
+            tasks.add(pool.submit(() -> readPart(document.substring(start, end), line, partSchema)));
+        }
+
+        JsonObject json = new JsonObject();
+        for (int i = 0; i < tasks.size(); i++) {
+            Part part;
+            try {
+                part = await(tasks.get(i));
+            } catch (IOException e) {
+                // reading sequentially might have stopped before this part, so that is left to decide what the error is.
+                // even the first part can fail on its own where the whole document wouldn't, as when it only holds comments
+                cancel(tasks, i + 1);
+                return read(document, 1, schema);
+            }
+            for (Map.Entry<String, JsonElement> entry : part.json().entrySet()) {
+                json.add(entry.getKey(), entry.getValue());
+            }
+            // reading sequentially would have stopped here too, so nothing after this part counts
+            if (!part.complete()) {
+                cancel(tasks, i + 1);
+                break;
+            }
+        }
+        if (json.size() > limits.maxKeys()) {
+            throw new IOException("Mapping exceeds the limit of " + limits.maxKeys() + " keys");
+        }
+        if (schema != null) {
+            schema.checkRequired(json);
+        }
+        return json;
+    }
+
+    private JsonObject read(String text, int firstLine, @Nullable YamlSchema schema) throws IOException {
+        try (YamlReader reader = createReader(text, firstLine)) {
+            return reader.readDocument(schema);
+        }
+    }
+
+    private Part readPart(String text, int firstLine, @Nullable YamlSchema schema) throws IOException {
+        try (YamlReader reader = createReader(text, firstLine)) {
+            JsonObject json = reader.readDocument(schema);
+            return new Part(json, reader.isAtEnd());
+        }
+    }
+
+    private YamlReader createReader(String text, int firstLine) {
+        YamlReader reader = new YamlReader(new StringReader(text));
+        reader.setLazyScalars(lazyScalars);
+        reader.setLimits(limits);
+        reader.setSource(source);
+        reader.setFirstLine(firstLine);
+        return reader;
+    }
+
+    private static void cancel(List<ForkJoinTask<Part>> tasks, int from) {
+        for (int i = from; i < tasks.size(); i++) {
+            tasks.get(i).cancel(false);
+        }
+    }
+
+    private static Part await(ForkJoinTask<Part> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            // the pool wraps checked exceptions thrown by the task
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Finds where each chunk starts and the line it starts on, or returns null if the document can only be read in one go.
+     */
+    @Nullable
+    static Chunks split(String text, int chunkSize) {
+        Chunks chunks = new Chunks();
+        chunks.starts.add(0);
+        chunks.lines.add(1);
+
+        YamlLineScanner scanner = new YamlLineScanner();
+        int line = 1;
+        for (int start = 0; start < text.length(); line++) {
+            int end = YamlLines.lineEnd(text, start);
+            if (scanner.line(text, start, end) && YamlLines.indentation(text, start, end) == 0) {
+                int separator = YamlLines.keySeparator(text, start, YamlLines.commentStart(text, start, end));
+                char c = text.charAt(start);
+                boolean key = c != '?' && c != '-' && separator > start;
+                // complex keys and top-level merge keys need the rest of the document, so it is read sequentially instead
+                if (c == '?' || (key && YamlLines.key(text, start, separator).equals(Constants.MERGE_KEY))) {
+                    return null;
+                }
+                if (key && start - chunks.starts.get(chunks.starts.length() - 1) >= chunkSize) {
+                    chunks.starts.add(start);
+                    chunks.lines.add(line);
+                }
+            }
+            if (scanner.alias) {
+                return null;
+            }
+            start = YamlLines.nextLine(text, end);
+        }
+        return chunks;
+    }
+
+    private record Part(JsonObject json, boolean complete) {}
+
+    static final class Chunks {
+        final IntList starts = new IntList(16);
+        final IntList lines = new IntList(16);
+    }
+}
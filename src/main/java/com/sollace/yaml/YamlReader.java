@@ -5,10 +5,10 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.Map;
 import java.util.Stack;
 
 import org.jetbrains.annotations.Nullable;
@@ -16,24 +16,260 @@ import org.jetbrains.annotations.Nullable;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+
+import jdk.jfr.FlightRecorder;
 
 
 import com.sollace.yaml.YamlTokenizer.Token;
+import com.sollace.yaml.YamlTreeBuilder.ScalarKind;
+import com.sollace.yaml.util.BooleanList;
+import com.sollace.yaml.util.DoubleList;
+import com.sollace.yaml.util.IOBiConsumer;
+import com.sollace.yaml.util.IOConsumer;
+import com.sollace.yaml.util.IORunnable;
+import com.sollace.yaml.util.IOSupplier;
+import com.sollace.yaml.util.IntList;
+import com.sollace.yaml.util.LongList;
+import com.sollace.yaml.util.TrimmingAppendable;
 import static com.sollace.yaml.YamlTokenizer.Token.Type.*;
 
 public class YamlReader implements Closeable {
+    // returned in place of a value when a frame has been pushed or wants to read its next child
+    private static final Object PENDING = new Object();
 
     private final YamlTokenizer in;
 
     private final Stack<Token> indentation = new Stack<>();
 
+    private boolean lazyScalars;
+
+    private final Map<String, Anchor> anchors = new HashMap<>();
+    private boolean shareAliases;
+    private long aliasExpansionLimit = 1_000_000;
+    private long expandedAliasNodes;
+    // every node built so far, so an anchor's size is how many were built between it starting and ending
+    private long nodes;
+
+    // set while reading with a builder that was passed in, otherwise nodes go into a gson tree
+    @Nullable
+    private YamlTreeBuilder<Object> builder;
+    // the last scalar read in a flow sequence, kept as text in case a colon after it turns it into a key
+    @Nullable
+    private String flowScalarText;
+    // the last scalar built and the text it was built from, which a !!set tells its elements apart by
+    @Nullable
+    private Object lastScalar;
+    private ScalarKind lastScalarKind = ScalarKind.PLAIN;
+    @Nullable
+    private Object lastScalarText;
+
+    private final List<Frame> frames = new ArrayList<>();
+    private YamlLimits limits = YamlLimits.DEFAULT;
+    private YamlTags tags = YamlTags.STANDARD;
+
+    @Nullable
+    private String source;
+    // checked once per reader so that scalars don't each allocate an event when nothing is recording them
+    private final boolean coercionEvents = FlightRecorder.isInitialized() && new CoercionEvent().isEnabled();
+    private final boolean largeScalarEvents = FlightRecorder.isInitialized() && new LargeScalarEvent().isEnabled();
+
     public YamlReader(Reader in) {
         this.in = new YamlTokenizer(in);
         indentation.push(Token.EMPTY);
     }
 
+    public void setLazyScalars(boolean lazyScalars) {
+        this.lazyScalars = lazyScalars;
+    }
+
+    public void setShareAliases(boolean shareAliases) {
+        this.shareAliases = shareAliases;
+    }
+
+    public void setAliasExpansionLimit(long maxNodes) {
+        aliasExpansionLimit = maxNodes;
+    }
+
+    /**
+     * Sets how many collections and anchors may be nested inside each other before reading fails.
+     */
+    public void setMaxDepth(int maxDepth) {
+        limits = limits.withMaxDepth(maxDepth);
+    }
+
+    /**
+     * Sets the limits that the document must stay within. Reading fails with the position of the first one it crosses.
+     */
+    public void setLimits(YamlLimits limits) {
+        this.limits = limits;
+        in.setLimits(limits);
+    }
+
+    /**
+     * Sets the tags that scalars may be decoded with besides the built in types.
+     */
+    public void setTags(YamlTags tags) {
+        this.tags = tags;
+    }
+
+    void setFirstLine(int line) {
+        in.setFirstLine(line);
+    }
+
+    // whether nothing but whitespace and comments follows what has been read, as a document can stop short of the end of the text
+    boolean isAtEnd() throws IOException {
+        Token token;
+        do {
+            token = in.readToken();
+        } while (token.is(WHITESPACE) || token.is(NEWLINE));
+        return token.is(END);
+    }
+
+    /**
+     * Sets the name reported for this document in flight recorder events, such as the path of the file being read.
+     */
+    public void setSource(@Nullable String source) {
+        this.source = source;
+    }
+
     public JsonObject readDocument() throws IOException {
+        return readDocument((YamlSchema)null);
+    }
+
+    public JsonObject readDocument(@Nullable YamlSchema schema) throws IOException {
+        @Nullable
+        ParseEvent event = beginEvent();
+        try {
+            beginDocument();
+            JsonObject json = readObject(true, schema);
+            indentation.pop();
+            return json;
+        } catch (IOException | RuntimeException e) {
+            failEvent(event, e);
+            throw e;
+        } finally {
+            endEvent(event);
+        }
+    }
+
+    /**
+     * Reads the document into nodes made by the builder instead of a gson tree. Schemas are not applied.
+     */
+    public <T> T readDocument(YamlTreeBuilder<T> builder) throws IOException {
+        @Nullable
+        ParseEvent event = beginEvent();
+        try {
+            beginDocument();
+            T document = build(builder, () -> readMapping(true, null));
+            indentation.pop();
+            return document;
+        } catch (IOException | RuntimeException e) {
+            failEvent(event, e);
+            throw e;
+        } finally {
+            endEvent(event);
+        }
+    }
+
+    public <T> T readValue(YamlTreeBuilder<T> builder) throws IOException {
+        return build(builder, () -> readNode(null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T build(YamlTreeBuilder<T> builder, IOSupplier<Object> reader) throws IOException {
+        this.builder = (YamlTreeBuilder<Object>)builder;
+        try {
+            return (T)reader.get();
+        } finally {
+            this.builder = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private YamlTreeBuilder<Object> tree() {
+        if (builder != null) {
+            return builder;
+        }
+        return (YamlTreeBuilder<Object>)(YamlTreeBuilder<?>)(lazyScalars ? GsonTreeBuilder.LAZY : GsonTreeBuilder.EAGER);
+    }
+
+    /**
+     * Reads the document one top-level entry at a time, so only a single entry's value is held in memory.
+     * Entries pulled in through a merge key are passed on individually.
+     */
+    public void readDocumentEntries(IOBiConsumer<String, JsonElement> entries) throws IOException {
+        @Nullable
+        ParseEvent event = beginEvent();
+        try {
+            beginDocument();
+            int[] count = {0};
+            readEntries(true, propertyName -> {
+                JsonElement value = readValue();
+                if (propertyName.equals(Constants.MERGE_KEY)) {
+                    JsonObject merged = new JsonObject();
+                    GsonTreeBuilder.EAGER.merge(merged, value);
+                    for (var entry : merged.entrySet()) {
+                        checkKeys(++count[0]);
+                        entries.accept(entry.getKey(), entry.getValue());
+                    }
+                } else {
+                    checkKeys(++count[0]);
+                    entries.accept(propertyName, value);
+                }
+            });
+            indentation.pop();
+        } catch (IOException | RuntimeException e) {
+            failEvent(event, e);
+            throw e;
+        } finally {
+            endEvent(event);
+        }
+    }
+
+    /**
+     * Reads the document into an immutable compact form that takes far less memory to keep around than a gson tree.
+     * Values go straight into compact nodes as they are read, so no part of the document is ever held as a gson tree.
+     */
+    public CompactObject readCompactDocument() throws IOException {
+        return (CompactObject)readDocument(new CompactBuilder().tree());
+    }
+
+    // event classes are only loaded once flight recorder is running, as just loading them adds measurably to allocation
+    @Nullable
+    private ParseEvent beginEvent() {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+        ParseEvent event = new ParseEvent();
+        if (event.isEnabled()) {
+            event.characters = in.getCharacterCount();
+            event.tokens = in.getTokenCount();
+            event.begin();
+        }
+        return event;
+    }
+
+    private static void failEvent(@Nullable ParseEvent event, Exception e) {
+        if (event != null) {
+            event.failure = String.valueOf(e.getMessage());
+        }
+    }
+
+    // also called when reading fails, so failed reads show up in recordings with how far they got
+    private void endEvent(@Nullable ParseEvent event) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.characters = in.getCharacterCount() - event.characters;
+            event.tokens = in.getTokenCount() - event.tokens;
+            event.commit();
+        }
+    }
+
+    private void beginDocument() throws IOException {
         Token indent = in.readToken();
         if (indent.type() == WHITESPACE) {
             indentation.push(indent);
@@ -41,61 +277,264 @@ public class YamlReader implements Closeable {
             in.pushBack(indent);
             indentation.push(Token.EMPTY);
         }
+    }
 
-        JsonObject json = readObject(true);
+    public JsonObject readObject(boolean root) throws IOException {
+        return readObject(root, null);
+    }
 
-        indentation.pop();
-        return json;
+    public JsonObject readObject(boolean root, @Nullable YamlSchema schema) throws IOException {
+        return (JsonObject)readMapping(root, schema);
     }
 
-    public JsonObject readObject(boolean root) throws IOException {
-        JsonObject json = new JsonObject();
+    private Object readMapping(boolean root, @Nullable YamlSchema schema) throws IOException {
+        int base = frames.size();
+        push(new MapFrame(root, schema, false));
+        return run(base);
+    }
 
-        do {
-            Token token = in.readToken();
-            if (token.type() == END) {
-                break;
-            }
-            in.pushBack(token);
-            String propertyName = readKey();
-            in.readToken().require(SEPARATOR).require(Constants.KEY_VALUE_PAIR_SEPARATOR);
-            json.add(propertyName, readValue());
+    private void readEntries(boolean root, IOConsumer<String> valueReader) throws IOException {
+        for (String propertyName = beginEntry(); propertyName != null; propertyName = nextEntry(root) ? beginEntry() : null) {
+            valueReader.accept(propertyName);
+        }
+    }
+
+    /**
+     * Reads the key of the next mapping entry up to and including its separator, or returns null at the end of the document.
+     */
+    @Nullable
+    private String beginEntry() throws IOException {
+        Token token = in.readToken();
+        // a document of only blank lines, comments and directives has no entries
+        while (token.is(NEWLINE) || token.is(WHITESPACE)) {
             token = in.readToken();
-            if (token.is(END)) {
-                break;
-            }
-            if (token.is(NEWLINE)) {
-                token = in.readToken();
-            }
+        }
+        if (token.type() == END) {
+            return null;
+        }
+        in.pushBack(token);
+        String propertyName = readKey();
+        in.readToken().require(SEPARATOR).require(Constants.KEY_VALUE_PAIR_SEPARATOR);
+        return propertyName;
+    }
 
-            if (token.is(TEXT)) {
-                in.pushBack(token);
-                if (!root && !indentation.peek().value().isEmpty()) {
-                    break;
+    /**
+     * Consumes the line break and indentation following a mapping entry and returns whether another entry at the same level follows.
+     */
+    private boolean nextEntry(boolean root) throws IOException {
+        Token token = in.readToken();
+        if (token.is(END)) {
+            return false;
+        }
+        if (token.is(NEWLINE)) {
+            token = in.readToken();
+        }
+
+        if (token.is(TEXT)) {
+            in.pushBack(token);
+            return root || indentation.peek().value().isEmpty();
+        }
+
+        if (!token.is(WHITESPACE)) {
+            in.pushBack(token);
+            return false;
+        }
+
+        if (!root && indentation.peek().value().isEmpty()) {
+            indentation.pop();
+            indentation.push(token);
+        } else if (!indentation.peek().value().equalsIgnoreCase(token.value())) {
+            in.pushBack(token);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Skips the value of an entry that isn't kept, following only flow brackets and indentation rather than reading it into nodes.
+     * A block value ends at the first line that isn't indented past the mapping, a flow value at the first separator outside its brackets.
+     *
+     * @return false without skipping anything if the value defines an anchor, as it has to be read after all
+     */
+    private boolean skipValue(boolean flow) throws IOException {
+        Token first = flow ? readFlowToken() : in.readToken();
+        while (first.is(WHITESPACE)) {
+            first = in.readToken();
+        }
+        in.pushBack(first);
+        if (first.is(CONTROL_CHARACTER) && first.value().equalsIgnoreCase(Constants.ANCHOR_PREFIX)) {
+            return false;
+        }
+
+        int indent = indentation.peek().value().length();
+        int depth = 0;
+        Token previous = Token.EMPTY;
+        try {
+            do {
+                Token token = in.readToken();
+                Token preceding = previous;
+                previous = token;
+                switch (token.type()) {
+                    case END:
+                        if (depth > 0) {
+                            throw in.error("Premature end of document");
+                        }
+                        in.pushBack(token);
+                        return true;
+                    case QUOTE:
+                        // quotes inside plain text, as in it's, don't start a string
+                        if (!preceding.is(TEXT) && !in.skipQuoted(token.value().charAt(0))) {
+                            readQuotedString(token.value());
+                        }
+                        break;
+                    case MODE_CHANGE:
+                        if (isFlowStart(token)) {
+                            in.enterFlow();
+                            depth++;
+                        } else if (depth > 0) {
+                            in.exitFlow();
+                            depth--;
+                        } else if (flow) {
+                            in.pushBack(token);
+                            return true;
+                        }
+                        break;
+                    case SEPARATOR:
+                        if (flow && depth == 0 && token.value().equalsIgnoreCase(Constants.FLOW_SEPARATOR)) {
+                            in.pushBack(token);
+                            return true;
+                        }
+                        break;
+                    case NEWLINE:
+                        if (flow || depth > 0) {
+                            break;
+                        }
+                        Token next = in.readToken();
+                        if (next.is(WHITESPACE) && next.value().length() <= indent) {
+                            // lines of nothing but blanks don't end the value
+                            Token after = in.readToken();
+                            in.pushBack(after);
+                            if (after.is(NEWLINE)) {
+                                break;
+                            }
+                        } else if (next.is(WHITESPACE) || next.is(NEWLINE)) {
+                            in.pushBack(next);
+                            break;
+                        }
+                        in.pushBack(next);
+                        in.pushBack(token);
+                        return true;
+                    default:
+                        break;
                 }
-                continue;
+            } while (true);
+        } finally {
+            for (; depth > 0; depth--) {
+                in.exitFlow();
             }
+        }
+    }
 
-            if (!token.is(WHITESPACE)) {
-                in.pushBack(token);
-                break;
+    public JsonElement readValue(YamlSchema.Field field) throws IOException {
+        @Nullable
+        JsonElement value = readScalarField(field);
+        return value != null ? value : field.check((JsonElement)readNode(field.schema()));
+    }
+
+    @Nullable
+    private JsonElement readScalarField(YamlSchema.Field field) throws IOException {
+        Token token = in.readToken();
+        while (token.is(WHITESPACE)) {
+            token = in.readToken();
+        }
+        in.pushBack(token);
+
+        if (field.isScalar() && (token.is(TEXT) || (token.is(QUOTE) && field.type() == YamlObjectType.STRING))) {
+            try {
+                Object value = switch (field.type()) {
+                    case STRING -> scalar(ScalarKind.QUOTED, readString());
+                    case INT -> number(readInt());
+                    case DOUBLE -> number(readDouble());
+                    case FLOAT -> number(readFloat());
+                    case LONG -> number(readLong());
+                    case SHORT -> number(readShort());
+                    case BYTE -> number(readByte());
+                    case BOOL -> bool(readBoolean());
+                    default -> throw new IOException("Type unsupported: " + field.type());
+                };
+                in.skipToken(WHITESPACE);
+                // schemas are only read into gson trees
+                return (JsonElement)value;
+            } catch (NumberFormatException e) {
+                throw new IOException("Expected " + field.type() + " for key " + field.key() + ": " + e.getMessage(), e);
             }
+        }
+        return null;
+    }
 
-            if (!root && indentation.peek().value().isEmpty()) {
-                indentation.pop();
-                indentation.push(token);
-            } else {
-                if (!indentation.peek().value().equalsIgnoreCase(token.value())) {
-                    in.pushBack(token);
-                    break;
+    public JsonElement readValue() throws IOException {
+        return readValue((YamlSchema)null);
+    }
+
+    public JsonElement readValue(@Nullable YamlSchema schema) throws IOException {
+        return (JsonElement)readNode(schema);
+    }
+
+    @Nullable
+    private Object readNode(@Nullable YamlSchema schema) throws IOException {
+        int base = frames.size();
+        @Nullable
+        Object value = beginValue(schema);
+        return value != PENDING ? value : run(base);
+    }
+
+    /**
+     * Drives the frames above base until the first of them completes.
+     *
+     * Each step asks the innermost frame for its next child. Scalars are handed straight back to it, while collections
+     * push a frame of their own, so nesting depth costs heap rather than stack.
+     */
+    @Nullable
+    private Object run(int base) throws IOException {
+        @Nullable
+        Object value = PENDING;
+        try {
+            while (frames.size() > base) {
+                Frame frame = frames.get(frames.size() - 1);
+                if (value != PENDING) {
+                    frame.accept(value);
+                }
+                value = frame.next();
+                if (value == PENDING) {
+                    value = frame.flowChild ? beginFlowValue(frame.childSchema) : beginValue(frame.childSchema);
+                } else {
+                    frames.remove(frames.size() - 1).exit();
                 }
             }
-        } while (true);
+        } catch (IOException | RuntimeException e) {
+            while (frames.size() > base) {
+                frames.remove(frames.size() - 1).exit();
+            }
+            throw e;
+        }
+        return value;
+    }
 
-        return json;
+    private Object push(Frame frame) throws IOException {
+        if (frames.size() >= limits.maxDepth()) {
+            frame.exit();
+            throw in.error("Maximum nesting depth of " + limits.maxDepth() + " exceeded");
+        }
+        frames.add(frame);
+        return PENDING;
     }
 
-    public JsonElement readValue() throws IOException {
+    /**
+     * Reads a block value. Scalars are returned directly, collections push a frame and return PENDING.
+     */
+    @Nullable
+    private Object beginValue(@Nullable YamlSchema schema) throws IOException {
+        int leadingSpace = 0;
         do {
             Token token = in.readToken();
             Token next;
@@ -103,16 +542,16 @@ public class YamlReader implements Closeable {
             switch (token.type()) {
                 case END: throw new IOException("Premature end of document");
                 case SEPARATOR: throw new IOException("Expected value");
-                case QUOTE: return new JsonPrimitive(readQuotedString(token.value()));
+                case QUOTE: return scalar(ScalarKind.QUOTED, readQuotedString(token.value()));
                 case MODE_CHANGE:
                     if (token.value().equalsIgnoreCase(Constants.ARRAY_START)) {
-                        throw new IOException("Inline sequences are not supported");
+                        return push(new FlowSequenceFrame(schema, false));
                     }
                     if (token.value().equalsIgnoreCase(Constants.MAP_START)) {
-                        throw new IOException("Inline maps are not supported");
+                        return push(new FlowMapFrame(schema, false));
                     }
                     in.pushBack(token);
-                    return TypeCoersion.valueOf(readString());
+                    return coerce(readString());
                 case TEXT:
                     next = in.readToken();
                     // check for dangling object pairs
@@ -123,115 +562,303 @@ public class YamlReader implements Closeable {
                     if (next.is(SEPARATOR) && next.value().equalsIgnoreCase(Constants.KEY_VALUE_PAIR_SEPARATOR)) {
                         in.pushBack(next);
                         in.pushBack(token);
-                        indentation.push(Token.EMPTY);
-                        JsonObject json = readObject(false);
-                        indentation.pop();
-                        return json;
+                        indentation.push(leadingSpace == 0 ? Token.EMPTY : new Token(WHITESPACE, indentation.peek().value() + " ".repeat(leadingSpace + 1)));
+                        return push(new MapFrame(false, schema, true));
                     }
                     in.pushBack(next);
                     in.pushBack(token);
-                    return TypeCoersion.valueOf(readString());
+                    return coerce(readString());
                 case CONTROL_CHARACTER:
+                    if (token.value().equalsIgnoreCase(Constants.ANCHOR_PREFIX)) {
+                        return push(new AnchorFrame(in.nextToken().require(TEXT).value(), schema, false));
+                    }
+                    if (token.value().equalsIgnoreCase(Constants.ALIAS_PREFIX)) {
+                        return alias(in.nextToken().require(TEXT).value());
+                    }
                     if (token.value().equalsIgnoreCase(Constants.KEY_INDICATOR)) {
                         in.pushBack(token);
                         indentation.push(Token.EMPTY);
-                        JsonObject json = readObject(false);
-                        indentation.pop();
-                        return json;
-                    }
-                    if (token.value().equalsIgnoreCase(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING)) {
-                        return new JsonPrimitive(readMultiLineString(true, true));
-                    }
-                    if (token.value().equalsIgnoreCase(Constants.MULTI_LINE_STRING)) {
-                        return new JsonPrimitive(readMultiLineString(false, true));
+                        return push(new MapFrame(false, schema, true));
                     }
-                    if (token.value().equalsIgnoreCase(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING_NO_NEWLINE)) {
-                        return new JsonPrimitive(readMultiLineString(true, false));
-                    }
-                    if (token.value().equalsIgnoreCase(Constants.MULTI_LINE_STRING_NO_NEWLINE)) {
-                        return new JsonPrimitive(readMultiLineString(false, false));
+                    if (isBlockScalarIndicator(token)) {
+                        return readBlockScalar(token);
                     }
                     if (token.value().equalsIgnoreCase(Constants.TYPE_COERSION_INDICATOR)) {
-                        token = in.readToken().require(TEXT);
-
-                        @Nullable
-                        YamlObjectType type = YamlObjectType.of(token.value());
-
-                        if (type == null) {
-                            throw new IOException("Type unsupported: " + token.value());
-                        }
-
-                        if (type.isBlockScoped()) {
-                            token = in.readToken();
-                            if (token.is(WHITESPACE)) {
-                                token = in.readToken();
-                            }
-                            token.require(NEWLINE);
-                            indentation.push(in.readToken().require(WHITESPACE));
-                            try {
-                                return switch (type) {
-                                    case MAP -> readObject(false);
-                                    case SEQUENCE -> readArray();
-                                    case SET -> readSet();
-                                    default -> throw new IOException("Type unsupported: " + token.value());
-                                };
-                            } finally {
-                                indentation.pop();
-                            }
-                        }
-
-                        do {
-                            next = in.readToken();
-                            if (!next.is(WHITESPACE) && !next.is(NEWLINE)) {
-                                in.pushBack(next);
-                                break;
-                            }
-                        } while (true);
-                        return switch (type) {
-                            case STRING -> new JsonPrimitive(readString());
-                            case INT -> new JsonPrimitive(readInt());
-                            case DOUBLE -> new JsonPrimitive(readDouble());
-                            case FLOAT -> new JsonPrimitive(readFloat());
-                            case LONG -> new JsonPrimitive(readLong());
-                            case SHORT -> new JsonPrimitive(readShort());
-                            case BYTE -> new JsonPrimitive(readByte());
-                            case BOOL -> new JsonPrimitive(readBoolean());
-                            default -> throw new IOException("Type unsupported: " + token.value());
-                        };
+                        return beginTypedValue(schema);
                     }
-
                     break;
                 case NEWLINE:
-                    try {
-                        Token indent = in.readToken().require(WHITESPACE);
-                        indentation.push(indent);
-                        token = in.readToken();
-                        if (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.ARRAY_ELEMENT_PREFIX)) {
-                            in.pushBack(token);
-                            return readArray();
-                        }
-                        if (token.is(CONTROL_CHARACTER) && token.value().equalsIgnoreCase(Constants.KEY_INDICATOR)) {
-                            in.pushBack(token);
-                            return readObject(false);
-                        }
-                        if (token.is(TEXT)) {
-                            next = in.readToken();
-                            if (next.is(SEPARATOR) && next.value().equalsIgnoreCase(Constants.KEY_VALUE_PAIR_SEPARATOR)) {
-                                in.pushBack(next);
-                                in.pushBack(token);
-                                return readObject(false);
-                            }
-                        }
-                        return new JsonPrimitive("");
-                    } finally {
-                        indentation.pop();
-                    }
+                    return beginIndentedValue(schema);
                 case WHITESPACE:
+                    leadingSpace += token.value().length();
                     continue;
             }
         } while (true);
     }
 
+    @Nullable
+    private Object beginTypedValue(@Nullable YamlSchema schema) throws IOException {
+        Token token = in.readToken().require(TEXT);
+
+        @Nullable
+        YamlObjectType type = YamlObjectType.of(token.value());
+        @Nullable
+        YamlTag<?> tag = type == null ? tags.get(token.value()) : null;
+
+        if (type == null && tag == null) {
+            throw new IOException("Type unsupported: " + token.value());
+        }
+
+        if (tag == null && type.isBlockScoped()) {
+            token = in.readToken();
+            if (token.is(WHITESPACE)) {
+                token = in.readToken();
+            }
+            token.require(NEWLINE);
+            indentation.push(in.readToken().require(WHITESPACE));
+            return push(type == YamlObjectType.MAP ? new MapFrame(false, schema, true) : new SequenceFrame(type == YamlObjectType.SEQUENCE, schema, true));
+        }
+
+        // errors point at where the scalar starts rather than wherever reading it stopped
+        int line;
+        int column;
+        do {
+            line = in.getLine();
+            column = in.getColumn();
+            Token next = in.readToken();
+            if (!next.is(WHITESPACE) && !next.is(NEWLINE)) {
+                in.pushBack(next);
+                break;
+            }
+        } while (true);
+        if (tag != null) {
+            StringBuilder buffer = new StringBuilder();
+            readScalar(buffer);
+            return tagged(tag, buffer, line, column);
+        }
+        return switch (type) {
+            case STRING -> scalar(ScalarKind.QUOTED, readString());
+            case INT -> number(readInt());
+            case DOUBLE -> number(readDouble());
+            case FLOAT -> number(readFloat());
+            case LONG -> number(readLong());
+            case SHORT -> number(readShort());
+            case BYTE -> number(readByte());
+            case BOOL -> bool(readBoolean());
+            default -> throw new IOException("Type unsupported: " + token.value());
+        };
+    }
+
+    /**
+     * Reads a tagged flow scalar through the same types and tags as a block one. Tags on flow collections are read past,
+     * as the collection reads the same without them.
+     */
+    @Nullable
+    private Object beginTypedFlowValue(@Nullable YamlSchema schema) throws IOException {
+        Token name = in.readToken().require(TEXT);
+
+        @Nullable
+        YamlObjectType type = YamlObjectType.of(name.value());
+        @Nullable
+        YamlTag<?> tag = type == null ? tags.get(name.value()) : null;
+
+        if (type == null && tag == null) {
+            throw new IOException("Type unsupported: " + name.value());
+        }
+        if (tag == null && type.isBlockScoped()) {
+            return beginFlowValue(schema);
+        }
+
+        int line;
+        int column;
+        Token token;
+        do {
+            line = in.getLine();
+            column = in.getColumn();
+            token = in.readToken();
+        } while (token.is(WHITESPACE) || token.is(NEWLINE));
+        String text = token.is(QUOTE) ? readQuotedString(token.value()) : readFlowScalar(token);
+        if (tag != null) {
+            return tagged(tag, text, line, column);
+        }
+        return switch (type) {
+            case STRING -> scalar(ScalarKind.QUOTED, text);
+            case INT -> number(parseInt(text));
+            case DOUBLE -> number(TypeCoersion.parseDouble(text));
+            case FLOAT -> number(TypeCoersion.parseFloat(text));
+            case LONG -> number(parseLong(text));
+            case SHORT -> number(parseShort(text));
+            case BYTE -> number(parseByte(text));
+            case BOOL -> bool(parseBoolean(text));
+            default -> throw new IOException("Type unsupported: " + name.value());
+        };
+    }
+
+    @Nullable
+    private Object beginIndentedValue(@Nullable YamlSchema schema) throws IOException {
+        indentation.push(in.readToken().require(WHITESPACE));
+        Token token = in.readToken();
+        if (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.ARRAY_ELEMENT_PREFIX)) {
+            in.pushBack(token);
+            return push(new SequenceFrame(true, schema, true));
+        }
+        if (token.is(CONTROL_CHARACTER) && token.value().equalsIgnoreCase(Constants.KEY_INDICATOR)) {
+            in.pushBack(token);
+            return push(new MapFrame(false, schema, true));
+        }
+        if (token.is(MODE_CHANGE) && isFlowStart(token)) {
+            return push(token.value().equalsIgnoreCase(Constants.ARRAY_START) ? new FlowSequenceFrame(schema, true) : new FlowMapFrame(schema, true));
+        }
+        if (token.is(TEXT)) {
+            Token next = in.readToken();
+            if (next.is(SEPARATOR) && next.value().equalsIgnoreCase(Constants.KEY_VALUE_PAIR_SEPARATOR)) {
+                in.pushBack(next);
+                in.pushBack(token);
+                return push(new MapFrame(false, schema, true));
+            }
+        }
+        indentation.pop();
+        return scalar(ScalarKind.PLAIN, "");
+    }
+
+    // decoded from the buffer the scalar is read into, without making a string of it first
+    private <V> Object tagged(YamlTag<V> tag, CharSequence text, int line, int column) throws IOException {
+        V value;
+        try {
+            value = tag.decode(text);
+        } catch (IllegalArgumentException e) {
+            throw in.error("Invalid " + Constants.TYPE_COERSION_INDICATOR + tag.name() + " value: " + e.getMessage(), line, column);
+        }
+        nodes++;
+        return tree().tagged(tag, value);
+    }
+
+    private Object scalar(ScalarKind kind, String text) {
+        nodes++;
+        return keepScalar(tree().scalar(kind, text), kind, text);
+    }
+
+    private Object number(Number value) {
+        nodes++;
+        return keepScalar(tree().number(value), ScalarKind.PLAIN, value);
+    }
+
+    private Object bool(boolean value) {
+        nodes++;
+        return keepScalar(tree().bool(value), ScalarKind.PLAIN, value);
+    }
+
+    // only turned into a key if the scalar ends up in a !!set
+    private Object keepScalar(Object scalar, ScalarKind kind, Object text) {
+        lastScalar = scalar;
+        lastScalarKind = kind;
+        lastScalarText = text;
+        return scalar;
+    }
+
+    @Nullable
+    private String scalarKey(@Nullable Object value) {
+        return value != null && value == lastScalar ? SetDeduplicator.scalarKey(lastScalarKind, lastScalarText) : null;
+    }
+
+    private Object endMapping(Object mapping) throws IOException {
+        nodes++;
+        flowScalarText = null;
+        return tree().endMapping(mapping);
+    }
+
+    private Object endSequence(Object sequence) throws IOException {
+        nodes++;
+        flowScalarText = null;
+        return tree().endSequence(sequence);
+    }
+
+    @Nullable
+    private Object anchor(String name, @Nullable Object value, long size) {
+        anchors.put(name, new Anchor(value, size));
+        return value;
+    }
+
+    @Nullable
+    private Object alias(String name) throws IOException {
+        @Nullable
+        Anchor anchor = anchors.get(name);
+        if (anchor == null) {
+            throw new IOException("Unknown alias: " + Constants.ALIAS_PREFIX + name);
+        }
+        expandedAliasNodes += anchor.size();
+        if (expandedAliasNodes > aliasExpansionLimit) {
+            throw new IOException("Alias expansion limit of " + aliasExpansionLimit + " nodes exceeded at " + Constants.ALIAS_PREFIX + name);
+        }
+        nodes += anchor.size();
+        return shareAliases ? anchor.value() : tree().alias(anchor.value());
+    }
+
+    private void checkKeys(int size) throws IOException {
+        if (size > limits.maxKeys()) {
+            throw in.error("Mapping exceeds the limit of " + limits.maxKeys() + " keys");
+        }
+    }
+
+    private void checkSequenceLength(int size) throws IOException {
+        if (size > limits.maxSequenceLength()) {
+            throw in.error("Sequence exceeds the limit of " + limits.maxSequenceLength() + " elements");
+        }
+    }
+
+    // blanks are only counted once something follows them, as trailing ones are trimmed from the value
+    private void checkScalarLength(Token token, StringBuilder buffer) throws IOException {
+        if (!token.is(WHITESPACE) && !token.is(NEWLINE)) {
+            in.checkScalarLength(buffer.length());
+        }
+    }
+
+    private Appendable checkScalarLength(Appendable out) {
+        return limits.maxScalarLength() == Integer.MAX_VALUE ? out : new LengthCheckingAppendable(out);
+    }
+
+    private Object coerce(String value) {
+        checkLength(value, "plain");
+        return coercionEvents ? coerceRecorded(value) : scalar(ScalarKind.PLAIN, value);
+    }
+
+    private Object coerceRecorded(String value) {
+        CoercionEvent event = new CoercionEvent();
+        event.begin();
+        Object result = scalar(ScalarKind.PLAIN, value);
+        event.end();
+        if (event.shouldCommit()) {
+            event.length = value.length();
+            event.value = LargeScalarEvent.preview(value);
+            event.type = typeOf(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    private static String typeOf(@Nullable Object value) {
+        if (value instanceof JsonElement json) {
+            return json.isJsonPrimitive() && json.getAsJsonPrimitive().isNumber() ? "number"
+                 : json.isJsonPrimitive() && json.getAsJsonPrimitive().isBoolean() ? "boolean"
+                 : json.isJsonNull() ? "null" : "string";
+        }
+        return value instanceof Number ? "number"
+             : value instanceof Boolean ? "boolean"
+             : value == null ? "null" : "string";
+    }
+
+    // flow sequence entries only become single pair mappings once the colon after them is read, so their text is kept for the key
+    private Object flowScalar(ScalarKind kind, String text) {
+        flowScalarText = text;
+        return kind == ScalarKind.PLAIN ? coerce(text) : scalar(kind, text);
+    }
+
+    private void checkLength(String value, String style) {
+        if (largeScalarEvents) {
+            LargeScalarEvent.check(value, style);
+        }
+    }
+
     public JsonArray readArray() throws IOException {
         return readSequence(true);
     }
@@ -241,40 +868,199 @@ public class YamlReader implements Closeable {
     }
 
     private JsonArray readSequence(boolean allowDuplicates) throws IOException {
-        JsonArray array = new JsonArray();
-        String elementPrefix = allowDuplicates ? Constants.ARRAY_ELEMENT_PREFIX : Constants.SET_ELEMENT_PREFIX;
-        Set<JsonElement> values = allowDuplicates ? null : new HashSet<>();
-        do {
-            Token token = in.readToken().require(SEPARATOR).require(elementPrefix);
-            JsonElement value = readValue();
-            if (values == null || values.add(value)) {
-                array.add(value);
-            }
+        int base = frames.size();
+        push(new SequenceFrame(allowDuplicates, null, false));
+        return (JsonArray)run(base);
+    }
+
+    private boolean nextSequenceElement() throws IOException {
+        Token token = in.readToken();
+        if (token.is(TEXT)) {
+            in.pushBack(token);
+            return false;
+        }
+
+        if (token.is(WHITESPACE) && in.skipToken(NEWLINE).is(NEWLINE)) {
+            token = in.readToken();
+        }
+
+        if (token.is(NEWLINE)) {
             token = in.readToken();
-            if (token.is(TEXT)) {
+            if (!token.is(WHITESPACE) && !token.is(END)) {
                 in.pushBack(token);
-                return array;
+                return false;
             }
+        }
 
-            if (token.is(WHITESPACE) && in.skipToken(NEWLINE).is(NEWLINE)) {
-                token = in.readToken();
-            }
+        if (token.is(END)) {
+            return false;
+        }
 
-            if (token.is(NEWLINE)) {
-                token = in.readToken();
+        if (token.is(WHITESPACE) && !indentation.peek().value().equalsIgnoreCase(token.value())) {
+            in.pushBack(token);
+            return false;
+        }
+        return true;
+    }
+
+    public int[] readIntArray() throws IOException {
+        IntList values = new IntList(16);
+        readPrimitiveSequence(() -> values.add(readInt()));
+        return values.toArray();
+    }
+
+    public long[] readLongArray() throws IOException {
+        LongList values = new LongList(16);
+        readPrimitiveSequence(() -> values.add(readLong()));
+        return values.toArray();
+    }
+
+    public double[] readDoubleArray() throws IOException {
+        DoubleList values = new DoubleList(16);
+        readPrimitiveSequence(() -> values.add(readDouble()));
+        return values.toArray();
+    }
+
+    public boolean[] readBooleanArray() throws IOException {
+        BooleanList values = new BooleanList(16);
+        readPrimitiveSequence(() -> values.add(readBoolean()));
+        return values.toArray();
+    }
+
+    private void readPrimitiveSequence(IORunnable elementReader) throws IOException {
+        Token token = in.readToken();
+        while (token.is(WHITESPACE) || (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.KEY_VALUE_PAIR_SEPARATOR))) {
+            token = in.readToken();
+        }
+
+        if (token.is(MODE_CHANGE) && token.value().equalsIgnoreCase(Constants.ARRAY_START)) {
+            in.enterFlow();
+            try {
+                token = readFlowToken();
+                for (int count = 1; !token.is(MODE_CHANGE) || !token.value().equalsIgnoreCase(Constants.ARRAY_END); count++) {
+                    checkSequenceLength(count);
+                    in.pushBack(token);
+                    elementReader.run();
+                    token = readFlowToken();
+                    if (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.FLOW_SEPARATOR)) {
+                        token = readFlowToken();
+                    } else {
+                        token.require(MODE_CHANGE).require(Constants.ARRAY_END);
+                    }
+                }
+            } finally {
+                in.exitFlow();
             }
+            return;
+        }
 
-            if (token.is(END)) {
-                return array;
+        boolean indented = token.is(NEWLINE);
+        if (indented) {
+            indentation.push(in.readToken().require(WHITESPACE));
+        } else {
+            in.pushBack(token);
+        }
+        try {
+            int count = 0;
+            do {
+                checkSequenceLength(++count);
+                in.readToken().require(SEPARATOR).require(Constants.ARRAY_ELEMENT_PREFIX);
+                in.skipToken(WHITESPACE);
+                elementReader.run();
+            } while (nextSequenceElement());
+        } finally {
+            if (indented) {
+                indentation.pop();
             }
+        }
+    }
+
+    /**
+     * Reads a flow value. Scalars are returned directly, collections push a frame and return PENDING.
+     */
+    @Nullable
+    private Object beginFlowValue(@Nullable YamlSchema schema) throws IOException {
+        Token token = readFlowToken();
+        switch (token.type()) {
+            case END: throw new IOException("Premature end of document");
+            case QUOTE: return flowScalar(ScalarKind.QUOTED, readQuotedString(token.value()));
+            case MODE_CHANGE:
+                if (token.value().equalsIgnoreCase(Constants.ARRAY_START)) {
+                    return push(new FlowSequenceFrame(schema, false));
+                }
+                if (token.value().equalsIgnoreCase(Constants.MAP_START)) {
+                    return push(new FlowMapFrame(schema, false));
+                }
+                throw new IOException("Unexpected symbol: " + token);
+            case SEPARATOR:
+                if (token.value().equalsIgnoreCase(Constants.FLOW_SEPARATOR)) {
+                    throw new IOException("Expected value");
+                }
+                break;
+            case CONTROL_CHARACTER:
+                if (token.value().equalsIgnoreCase(Constants.ANCHOR_PREFIX)) {
+                    return push(new AnchorFrame(in.nextToken().require(TEXT).value(), schema, true));
+                }
+                if (token.value().equalsIgnoreCase(Constants.ALIAS_PREFIX)) {
+                    return alias(in.nextToken().require(TEXT).value());
+                }
+                if (token.value().equalsIgnoreCase(Constants.TYPE_COERSION_INDICATOR)) {
+                    return beginTypedFlowValue(schema);
+                }
+                break;
+            case TEXT:
+                // fast path for plain scalars made up of a single token
+                //  [ 1, 2, 3 ]
+                Token next = in.nextToken();
+                in.pushBack(next);
+                if (isFlowDelimiter(next)) {
+                    return flowScalar(ScalarKind.PLAIN, token.value());
+                }
+                break;
+            default:
+        }
+        return flowScalar(ScalarKind.PLAIN, readFlowScalar(token));
+    }
 
-            if (token.is(WHITESPACE) && !indentation.peek().value().equalsIgnoreCase(token.value())) {
+    private String readFlowScalar(Token token) throws IOException {
+        StringBuilder buffer = new StringBuilder();
+        do {
+            if (token.is(END)
+                    || token.isCommentBegin()
+                    || isFlowDelimiter(token)
+                    || (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.KEY_VALUE_PAIR_SEPARATOR))) {
                 in.pushBack(token);
-                return array;
+                return buffer.toString().trim();
+            }
+            if (token.is(NEWLINE)) {
+                buffer.append(' ');
+            } else if (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.ARRAY_ELEMENT_PREFIX)) {
+                buffer.append(token.value().charAt(0));
+            } else {
+                buffer.append(token.value());
+                checkScalarLength(token, buffer);
             }
+            token = in.nextToken();
         } while (true);
     }
 
+    private Token readFlowToken() throws IOException {
+        Token token;
+        do {
+            token = in.readToken();
+        } while (token.is(WHITESPACE) || token.is(NEWLINE));
+        return token;
+    }
+
+    private static boolean isFlowStart(Token token) {
+        return token.value().equalsIgnoreCase(Constants.ARRAY_START) || token.value().equalsIgnoreCase(Constants.MAP_START);
+    }
+
+    private static boolean isFlowDelimiter(Token token) {
+        return (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.FLOW_SEPARATOR))
+            || (token.is(MODE_CHANGE) && (token.value().equalsIgnoreCase(Constants.ARRAY_END) || token.value().equalsIgnoreCase(Constants.MAP_END)));
+    }
+
     public float readFloat() throws IOException {
         return TypeCoersion.parseFloat(in.readToken().require(TEXT).value());
     }
@@ -284,27 +1070,46 @@ public class YamlReader implements Closeable {
     }
 
     public int readInt() throws IOException {
-        String value = in.readToken().require(TEXT).value().trim().toUpperCase(Locale.ROOT);
-        return Integer.parseInt(value, TypeCoersion.getRadix(value));
+        return parseInt(in.readToken().require(TEXT).value());
     }
 
     public long readLong() throws IOException {
-        String value = in.readToken().require(TEXT).value().trim().toUpperCase(Locale.ROOT);
-        return Long.parseLong(value, TypeCoersion.getRadix(value));
+        return parseLong(in.readToken().require(TEXT).value());
     }
 
     public short readShort() throws IOException {
-        String value = in.readToken().require(TEXT).value().trim().toUpperCase(Locale.ROOT);
-        return Short.parseShort(value, TypeCoersion.getRadix(value));
+        return parseShort(in.readToken().require(TEXT).value());
     }
 
     public byte readByte() throws IOException {
-        String value = in.readToken().require(TEXT).value().trim().toUpperCase(Locale.ROOT);
-        return Byte.parseByte(value, TypeCoersion.getRadix(value));
+        return parseByte(in.readToken().require(TEXT).value());
     }
 
     public boolean readBoolean() throws IOException {
-        String value = in.readToken().require(TEXT).value();
+        return parseBoolean(in.readToken().require(TEXT).value());
+    }
+
+    private static int parseInt(String text) {
+        String value = text.trim().toUpperCase(Locale.ROOT);
+        return Integer.parseInt(TypeCoersion.stripRadixPrefix(value), TypeCoersion.getRadix(value));
+    }
+
+    private static long parseLong(String text) {
+        String value = text.trim().toUpperCase(Locale.ROOT);
+        return Long.parseLong(TypeCoersion.stripRadixPrefix(value), TypeCoersion.getRadix(value));
+    }
+
+    private static short parseShort(String text) {
+        String value = text.trim().toUpperCase(Locale.ROOT);
+        return Short.parseShort(TypeCoersion.stripRadixPrefix(value), TypeCoersion.getRadix(value));
+    }
+
+    private static byte parseByte(String text) {
+        String value = text.trim().toUpperCase(Locale.ROOT);
+        return Byte.parseByte(TypeCoersion.stripRadixPrefix(value), TypeCoersion.getRadix(value));
+    }
+
+    private static boolean parseBoolean(String value) throws IOException {
         if (TypeCoersion.isTrue(value)) {
             return true;
         }
@@ -345,12 +1150,47 @@ public class YamlReader implements Closeable {
     }
 
     public String readQuotedString(String quoteChars) throws IOException {
-        StringBuffer buffer = new StringBuffer();
+        StringBuilder buffer = new StringBuilder();
+        readQuotedString(quoteChars, buffer);
+        String value = buffer.toString();
+        checkLength(value, "quoted");
+        return value;
+    }
+
+    public void readQuotedString(String quoteChars, Appendable out) throws IOException {
+        if (!(out instanceof StringBuilder scanned)) {
+            // streamed through as it is scanned, trimmed the same as the token by token path
+            if (!in.readQuoted(quoteChars.charAt(0), new TrimmingAppendable(out))) {
+                readQuotedTokens(quoteChars, out);
+            }
+            return;
+        }
+        int start = scanned.length();
+        if (!in.readQuoted(quoteChars.charAt(0), scanned)) {
+            readQuotedTokens(quoteChars, out);
+            return;
+        }
+        // trimmed the same as the token by token path
+        int end = scanned.length();
+        int first = start;
+        while (first < end && scanned.charAt(first) <= ' ') {
+            first++;
+        }
+        while (end > first && scanned.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        scanned.setLength(end);
+        scanned.delete(start, first);
+    }
+
+    // only used when tokens following the opening quote have already been read and pushed back
+    private void readQuotedTokens(String quoteChars, Appendable out) throws IOException {
+        Appendable buffer = new TrimmingAppendable(checkScalarLength(out));
         do {
             Token token = in.nextToken();
 
             if (token.is(END)) {
-                throw new IOException("Unterminated string \"" + buffer.toString() + "\"");
+                throw new IOException("Unterminated string");
             }
 
             if (token.is(WHITESPACE)) {
@@ -380,10 +1220,18 @@ public class YamlReader implements Closeable {
             if (quoteChars.equalsIgnoreCase(Constants.DOUBLE_QUOTE)) {
                 if (token.is(CONTROL_CHARACTER) && token.value().equalsIgnoreCase("\\")) {
                     Token next = in.nextToken();
+                    if (next.is(END)) {
+                        throw in.error("Unterminated escape sequence");
+                    }
                     if (next.is(NEWLINE)) {
                         buffer.append(next.value());
                     } else {
-                        var codepoint = EscapeSequences.getCodepoint(next.value());
+                        EscapeSequences.Codepoint codepoint;
+                        try {
+                            codepoint = EscapeSequences.getCodepoint(next.value());
+                        } catch (IllegalArgumentException e) {
+                            throw in.error(e.getMessage());
+                        }
                         buffer.append(codepoint.character());
                         if (codepoint.remainder() != null) {
                             buffer.append(codepoint.remainder());
@@ -406,12 +1254,51 @@ public class YamlReader implements Closeable {
             }
             buffer.append(token.value());
         } while (true);
+    }
 
-        return buffer.toString().trim();
+    public void readScalar(Appendable out) throws IOException {
+        Token token = in.readToken();
+        while (token.is(WHITESPACE) || (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.KEY_VALUE_PAIR_SEPARATOR))) {
+            token = in.readToken();
+        }
+
+        if (token.is(QUOTE)) {
+            readQuotedString(token.value(), out);
+        } else if (isBlockScalarIndicator(token)) {
+            readBlockScalar(token, out);
+        } else {
+            in.pushBack(token);
+            out.append(readUnquotedString(true, false));
+        }
+    }
+
+    private Object readBlockScalar(Token indicator) throws IOException {
+        StringBuilder buffer = new StringBuilder();
+        readBlockScalar(indicator, buffer);
+        String value = buffer.toString();
+        checkLength(value, "block");
+        return scalar(ScalarKind.BLOCK, value);
+    }
+
+    private void readBlockScalar(Token indicator, Appendable out) throws IOException {
+        String value = indicator.value();
+        boolean keepNewlines = value.equalsIgnoreCase(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING)
+                || value.equalsIgnoreCase(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING_NO_NEWLINE);
+        boolean appendNewline = value.equalsIgnoreCase(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING)
+                || value.equalsIgnoreCase(Constants.MULTI_LINE_STRING);
+        readMultiLineString(keepNewlines, appendNewline, out);
+    }
+
+    private static boolean isBlockScalarIndicator(Token token) {
+        return token.is(CONTROL_CHARACTER) && (
+                   token.value().equalsIgnoreCase(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING)
+                || token.value().equalsIgnoreCase(Constants.MULTI_LINE_STRING)
+                || token.value().equalsIgnoreCase(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING_NO_NEWLINE)
+                || token.value().equalsIgnoreCase(Constants.MULTI_LINE_STRING_NO_NEWLINE));
     }
 
     public String readUnquotedString(boolean stopOnModeChange, boolean stopOnDelimiter) throws IOException {
-        StringBuffer buffer = new StringBuffer();
+        StringBuilder buffer = new StringBuilder();
 
         outer: do {
             Token token = in.nextToken();
@@ -444,6 +1331,7 @@ public class YamlReader implements Closeable {
                 break;
             } else {
                 buffer.append(token.value());
+                checkScalarLength(token, buffer);
             }
         } while (true);
 
@@ -451,7 +1339,13 @@ public class YamlReader implements Closeable {
     }
 
     public String readMultiLineString(boolean keepNewlines, boolean appendNewline) throws IOException {
-        StringBuffer buffer = new StringBuffer();
+        StringBuilder buffer = new StringBuilder();
+        readMultiLineString(keepNewlines, appendNewline, buffer);
+        return buffer.toString();
+    }
+
+    public void readMultiLineString(boolean keepNewlines, boolean appendNewline, Appendable out) throws IOException {
+        Appendable buffer = new TrimmingAppendable(checkScalarLength(out));
         Token token = in.nextToken();
         String baseIndent;
         if (token.is(TEXT) && TypeCoersion.isDecimal(token.value())) {
@@ -469,12 +1363,25 @@ public class YamlReader implements Closeable {
 
         boolean escapeNext = false;
         boolean isOnLineStart = false;
+        Token lineBreak = Token.NEWLINE;
         do {
             token = in.nextToken();
             if (isOnLineStart) {
                 if (token.is(WHITESPACE)) {
                     isOnLineStart = false;
-                    buffer.append(token.value().replaceFirst(baseIndent, ""));
+                    String indent = token.value();
+                    if (indent.length() < baseIndent.length()) {
+                        // a less indented line belongs to the enclosing block
+                        in.pushBack(token);
+                        in.pushBack(lineBreak);
+                        break;
+                    }
+                    int baseIndentStart = indent.indexOf(baseIndent);
+                    if (baseIndentStart == -1) {
+                        buffer.append(indent);
+                    } else {
+                        buffer.append(indent, 0, baseIndentStart).append(indent, baseIndentStart + baseIndent.length(), indent.length());
+                    }
                     continue;
                 } else {
                     in.pushBack(token);
@@ -489,6 +1396,7 @@ public class YamlReader implements Closeable {
                 }
                 if (token.is(NEWLINE)) {
                     isOnLineStart = true;
+                    lineBreak = token;
                     if (!in.peekToken().is(WHITESPACE)) {
                         in.pushBack(token);
                         break;
@@ -498,17 +1406,421 @@ public class YamlReader implements Closeable {
                 }
             }
 
+            escapeNext = false;
             buffer.append(token.value());
         } while (true);
 
         if (appendNewline) {
             buffer.append('\n');
         }
-        return buffer.toString().trim();
     }
 
     @Override
     public void close() throws IOException {
         in.close();
     }
+
+    /**
+     * A collection that is still being read.
+     *
+     * next() either completes the frame by returning its value, or returns PENDING to have the child
+     * described by childSchema and flowChild read and passed to accept().
+     */
+    private abstract class Frame {
+        private final boolean popIndentation;
+
+        @Nullable
+        YamlSchema childSchema;
+        boolean flowChild;
+
+        Frame(boolean popIndentation) {
+            this.popIndentation = popIndentation;
+        }
+
+        @Nullable
+        abstract Object next() throws IOException;
+
+        abstract void accept(@Nullable Object value) throws IOException;
+
+        final Object child(@Nullable YamlSchema schema, boolean flow) {
+            childSchema = schema;
+            flowChild = flow;
+            return PENDING;
+        }
+
+        void exit() {
+            if (popIndentation) {
+                indentation.pop();
+            }
+        }
+    }
+
+    private final class MapFrame extends Frame {
+        private final boolean root;
+        @Nullable
+        private final YamlSchema schema;
+        private final Object json = tree().startMapping();
+        private int size;
+
+        private boolean started;
+        @Nullable
+        private String propertyName;
+        @Nullable
+        private YamlSchema.Field field;
+
+        MapFrame(boolean root, @Nullable YamlSchema schema, boolean popIndentation) throws IOException {
+            super(popIndentation);
+            this.root = root;
+            this.schema = schema;
+        }
+
+        @Override
+        @Nullable
+        Object next() throws IOException {
+            do {
+                if (started && !nextEntry(root)) {
+                    return complete();
+                }
+                started = true;
+                propertyName = beginEntry();
+                if (propertyName == null) {
+                    return complete();
+                }
+                if (propertyName.equals(Constants.MERGE_KEY)) {
+                    tree().beginRetained();
+                    return child(null, false);
+                }
+                if (schema == null) {
+                    tree().key(json, propertyName);
+                    return child(null, false);
+                }
+                field = schema.get(propertyName);
+                if (field == null) {
+                    if (schema.rejectsUnknownKeys()) {
+                        throw in.error("Unknown key: " + propertyName);
+                    }
+                    // a nested mapping that started without indentation only learns it from its second entry
+                    if ((!root && indentation.peek().value().isEmpty()) || !skipValue(false)) {
+                        return child(null, false);
+                    }
+                    continue;
+                }
+                tree().key(json, propertyName);
+                @Nullable
+                JsonElement value = readScalarField(field);
+                if (value == null) {
+                    return child(field.schema(), false);
+                }
+                tree().put(json, propertyName, value);
+                checkKeys(++size);
+            } while (true);
+        }
+
+        @Override
+        void accept(@Nullable Object value) throws IOException {
+            if (propertyName.equals(Constants.MERGE_KEY)) {
+                size += tree().merge(json, tree().endRetained(value));
+            } else if (schema == null) {
+                tree().put(json, propertyName, value);
+                size++;
+            } else if (field != null) {
+                tree().put(json, propertyName, field.check((JsonElement)value));
+                size++;
+            }
+            checkKeys(size);
+        }
+
+        private Object complete() throws IOException {
+            if (schema != null) {
+                schema.checkRequired((JsonObject)json);
+            }
+            return endMapping(json);
+        }
+    }
+
+    private final class SequenceFrame extends Frame {
+        private final String elementPrefix;
+        @Nullable
+        private final YamlSchema schema;
+        @Nullable
+        private final SetDeduplicator values;
+        private final Object array = tree().startSequence();
+        private int size;
+
+        private boolean started;
+
+        SequenceFrame(boolean allowDuplicates, @Nullable YamlSchema schema, boolean popIndentation) throws IOException {
+            super(popIndentation);
+            this.elementPrefix = allowDuplicates ? Constants.ARRAY_ELEMENT_PREFIX : Constants.SET_ELEMENT_PREFIX;
+            this.schema = schema;
+            this.values = allowDuplicates ? null : new SetDeduplicator();
+        }
+
+        @Override
+        @Nullable
+        Object next() throws IOException {
+            if (started && !nextSequenceElement()) {
+                return endSequence(array);
+            }
+            started = true;
+            in.readToken().require(SEPARATOR).require(elementPrefix);
+            if (values != null) {
+                tree().beginRetained();
+            }
+            return child(schema, false);
+        }
+
+        @Override
+        void accept(@Nullable Object value) throws IOException {
+            if (values != null) {
+                value = tree().endRetained(value);
+            }
+            if (values == null || values.add(value, scalarKey(value))) {
+                tree().add(array, value);
+                checkSequenceLength(++size);
+            }
+        }
+    }
+
+    private final class FlowSequenceFrame extends Frame {
+        @Nullable
+        private final YamlSchema schema;
+        private final Object array = tree().startSequence();
+        private int size;
+
+        // single pair mappings
+        //  [ one: 1, two: 2 ]
+        @Nullable
+        private String pairKey;
+        @Nullable
+        private Object pair;
+        private boolean closed;
+
+        FlowSequenceFrame(@Nullable YamlSchema schema, boolean popIndentation) throws IOException {
+            super(popIndentation);
+            this.schema = schema;
+            in.enterFlow();
+        }
+
+        @Override
+        @Nullable
+        Object next() throws IOException {
+            if (closed) {
+                return endSequence(array);
+            }
+            if (pairKey != null) {
+                return child(null, true);
+            }
+            Token token = readFlowToken();
+            if (token.is(MODE_CHANGE) && token.value().equalsIgnoreCase(Constants.ARRAY_END)) {
+                return endSequence(array);
+            }
+            in.pushBack(token);
+            flowScalarText = null;
+            return child(schema, true);
+        }
+
+        @Override
+        void accept(@Nullable Object value) throws IOException {
+            if (pairKey != null) {
+                tree().put(pair, pairKey, value);
+                value = endMapping(pair);
+                pairKey = null;
+                pair = null;
+            } else {
+                Token token = readFlowToken();
+                if (token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.KEY_VALUE_PAIR_SEPARATOR)) {
+                    if (flowScalarText == null) {
+                        throw new IOException("Complex keys are not supported");
+                    }
+                    // the pair is started before its value is read so that builders see the key first
+                    pairKey = flowScalarText;
+                    pair = tree().startMapping();
+                    tree().key(pair, pairKey);
+                    return;
+                }
+                in.pushBack(token);
+            }
+            tree().add(array, value);
+            checkSequenceLength(++size);
+
+            Token token = readFlowToken();
+            if (token.is(MODE_CHANGE) && token.value().equalsIgnoreCase(Constants.ARRAY_END)) {
+                closed = true;
+            } else {
+                token.require(SEPARATOR).require(Constants.FLOW_SEPARATOR);
+            }
+        }
+
+        @Override
+        void exit() {
+            in.exitFlow();
+            super.exit();
+        }
+    }
+
+    private final class FlowMapFrame extends Frame {
+        @Nullable
+        private final YamlSchema schema;
+        private final Object json = tree().startMapping();
+        private int size;
+
+        @Nullable
+        private String propertyName;
+        @Nullable
+        private YamlSchema.Field field;
+        private boolean closed;
+
+        FlowMapFrame(@Nullable YamlSchema schema, boolean popIndentation) throws IOException {
+            super(popIndentation);
+            this.schema = schema;
+            in.enterFlow();
+        }
+
+        @Override
+        @Nullable
+        Object next() throws IOException {
+            while (!closed) {
+                Token token = readFlowToken();
+                if (token.is(MODE_CHANGE) && token.value().equalsIgnoreCase(Constants.MAP_END)) {
+                    break;
+                }
+                propertyName = token.is(QUOTE) ? readQuotedString(token.value()) : readFlowScalar(token);
+                token = readFlowToken();
+                // json style pairs without a space after the colon
+                //  {"one":1}
+                if (token.is(TEXT) && token.value().startsWith(":")) {
+                    if (token.value().length() > 1) {
+                        in.pushBack(new Token(TEXT, token.value().substring(1)));
+                    }
+                    token = new Token(SEPARATOR, Constants.KEY_VALUE_PAIR_SEPARATOR);
+                }
+
+                field = schema == null ? null : schema.get(propertyName);
+                boolean separated = token.is(SEPARATOR) && token.value().equalsIgnoreCase(Constants.KEY_VALUE_PAIR_SEPARATOR);
+                if (schema != null && field == null) {
+                    if (schema.rejectsUnknownKeys()) {
+                        throw in.error("Unknown key: " + propertyName);
+                    }
+                    if (!separated) {
+                        endEntry(token);
+                        continue;
+                    }
+                    if (skipValue(true)) {
+                        endEntry(readFlowToken());
+                        continue;
+                    }
+                } else {
+                    tree().key(json, propertyName);
+                }
+
+                if (separated) {
+                    return child(field == null ? null : field.schema(), true);
+                }
+                nodes++;
+                add(tree().nullValue());
+                endEntry(token);
+            }
+
+            if (schema != null) {
+                schema.checkRequired((JsonObject)json);
+            }
+            return endMapping(json);
+        }
+
+        @Override
+        void accept(@Nullable Object value) throws IOException {
+            add(value);
+            endEntry(readFlowToken());
+        }
+
+        private void add(@Nullable Object value) throws IOException {
+            if (schema == null) {
+                tree().put(json, propertyName, value);
+                size++;
+            } else if (field != null) {
+                tree().put(json, propertyName, field.check((JsonElement)value));
+                size++;
+            }
+            checkKeys(size);
+        }
+
+        private void endEntry(Token token) throws IOException {
+            if (token.is(MODE_CHANGE) && token.value().equalsIgnoreCase(Constants.MAP_END)) {
+                closed = true;
+            } else {
+                token.require(SEPARATOR).require(Constants.FLOW_SEPARATOR);
+            }
+        }
+
+        @Override
+        void exit() {
+            in.exitFlow();
+            super.exit();
+        }
+    }
+
+    private final class AnchorFrame extends Frame {
+        private final String name;
+        @Nullable
+        private final YamlSchema schema;
+        private final boolean flow;
+        private final long start = nodes;
+
+        @Nullable
+        private Object value = PENDING;
+
+        AnchorFrame(String name, @Nullable YamlSchema schema, boolean flow) {
+            super(false);
+            this.name = name;
+            this.schema = schema;
+            this.flow = flow;
+        }
+
+        @Override
+        @Nullable
+        Object next() {
+            if (value == PENDING) {
+                tree().beginRetained();
+                return child(schema, flow);
+            }
+            return anchor(name, value, nodes - start);
+        }
+
+        @Override
+        void accept(@Nullable Object value) {
+            this.value = tree().endRetained(value);
+        }
+    }
+
+    private record Anchor(@Nullable Object value, long size) {}
+
+    private final class LengthCheckingAppendable implements Appendable {
+        private final Appendable out;
+        private long length;
+
+        LengthCheckingAppendable(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            in.checkScalarLength(++length);
+            out.append(c);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            length += end - start;
+            in.checkScalarLength(length);
+            out.append(csq, start, end);
+            return this;
+        }
+    }
 }
@@ -0,0 +1,448 @@
+package com.sollace.yaml;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.sollace.yaml.util.IOConsumer;
+
+/**
+ * Writes yaml files on a background thread.
+ *
+ * Saves of the same file requested within the debounce delay are coalesced, so only the latest contents are written
+ * and every caller receives the same future. Files are written to a temporary file beside the target, synced to disk
+ * and then moved over the target, so a crash leaves either the old or the new contents in place.
+ *
+ * With skipUnchanged set, saves that would not change a file's contents leave it untouched.
+ */
+public class YamlSaveService implements Closeable {
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    // output up to this size is held in memory until it is known whether it needs writing at all
+    private static final int IN_MEMORY_OUTPUT = 1 << 20;
+
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final long debounceNanos;
+
+    private final Map<Path, FileState> files = new HashMap<>();
+    private boolean closed;
+    private volatile boolean skipUnchanged;
+
+    public YamlSaveService(Duration debounce) {
+        this(Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "Yaml Save Thread");
+            thread.setDaemon(true);
+            return thread;
+        }), debounce, true);
+    }
+
+    public YamlSaveService(ScheduledExecutorService executor, Duration debounce) {
+        this(executor, debounce, false);
+    }
+
+    private YamlSaveService(ScheduledExecutorService executor, Duration debounce, boolean ownsExecutor) {
+        this.executor = executor;
+        this.debounceNanos = debounce.toNanos();
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Sets whether saves compare their output against what is already on disk, and skip writing files that would not change.
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Schedules the document to be written to the file. The document is copied, so it can be modified again straight away.
+     *
+     * @return a future completed with whether the file was written, which is false if the save was skipped as unchanged
+     */
+    public CompletableFuture<Boolean> save(Path file, JsonElement document) {
+        JsonElement snapshot = document.deepCopy();
+        return save(file, writer -> writer.value(snapshot));
+    }
+
+    /**
+     * Schedules the file to be written with the given contents.
+     * The contents are written on the executor, so anything they read must be safe to access from there.
+     */
+    public synchronized CompletableFuture<Boolean> save(Path file, IOConsumer<YamlWriter> contents) {
+        if (closed) {
+            throw new IllegalStateException("Save service has been closed");
+        }
+        Path target = file.toAbsolutePath().normalize();
+        FileState state = files.computeIfAbsent(target, FileState::new);
+        PendingSave save = state.pending;
+        if (save == null) {
+            save = new PendingSave(state, ++state.generation);
+            state.pending = save;
+            PendingSave scheduled = save;
+            save.timer = executor.schedule(() -> start(scheduled), debounceNanos, TimeUnit.NANOSECONDS);
+        }
+        save.contents = contents;
+        return save.result.copy();
+    }
+
+    /**
+     * Starts every pending save without waiting for its debounce delay.
+     *
+     * @return a future completed once all of them, and any saves already being written, have finished
+     */
+    public CompletableFuture<Void> flush() {
+        List<PendingSave> saves = new ArrayList<>();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        synchronized (this) {
+            for (FileState state : files.values()) {
+                if (state.pending != null) {
+                    saves.add(state.pending);
+                    results.add(state.pending.result);
+                }
+                if (state.writing != null) {
+                    results.add(state.writing);
+                }
+            }
+        }
+        for (PendingSave save : saves) {
+            if (save.timer.cancel(false)) {
+                executor.execute(() -> start(save));
+            }
+        }
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Writes any pending saves and waits for them to finish. An executor created by this service is shut down afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+        }
+        try {
+            flush().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            if (ownsExecutor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void start(PendingSave save) {
+        IOConsumer<YamlWriter> contents;
+        synchronized (this) {
+            if (save.state.pending != save) {
+                return;
+            }
+            save.state.pending = null;
+            save.state.writing = save.result;
+            contents = save.contents;
+        }
+
+        // one write per file at a time, and a save that lost the race to a newer one is already on disk
+        synchronized (save.state) {
+            try {
+                boolean written = false;
+                if (save.generation > save.state.writtenGeneration) {
+                    if (skipUnchanged) {
+                        Outcome outcome = writeIfChanged(save.state.file, contents, save.state.digest);
+                        save.state.digest = outcome.digest();
+                        written = outcome.written();
+                    } else {
+                        write(save.state.file, contents);
+                        save.state.digest = null;
+                        written = true;
+                    }
+                    save.state.writtenGeneration = save.generation;
+                }
+                save.result.complete(written);
+            } catch (Throwable e) {
+                save.result.completeExceptionally(e);
+            }
+        }
+        synchronized (this) {
+            if (save.state.writing == save.result) {
+                save.state.writing = null;
+            }
+        }
+    }
+
+    /**
+     * Writes the file on the calling thread, replacing it only once the new contents are fully on disk.
+     */
+    public static void write(Path file, IOConsumer<YamlWriter> contents) throws IOException {
+        Path target = file.toAbsolutePath();
+        writeText(target, out -> {
+            try (YamlWriter writer = new YamlWriter(out)) {
+                writer.setTarget(target.toString());
+                contents.accept(writer);
+            }
+        });
+    }
+
+    /**
+     * Writes text to the file through a temporary file the same way as write, for callers that already have the text to hand.
+     */
+    static void writeText(Path file, IOConsumer<Writer> contents) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = tempFile(target);
+        try {
+            try (Writer out = Files.newBufferedWriter(temp)) {
+                contents.accept(out);
+            }
+            replace(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        syncDirectory(target.getParent());
+    }
+
+    /**
+     * Writes the file on the calling thread like write, unless it already holds exactly what would be written.
+     *
+     * @return true if the file was written
+     */
+    public static boolean writeIfChanged(Path file, IOConsumer<YamlWriter> contents) throws IOException {
+        return writeIfChanged(file.toAbsolutePath(), contents, null).written();
+    }
+
+    private static Outcome writeIfChanged(Path target, IOConsumer<YamlWriter> contents, @Nullable Digest cached) throws IOException {
+        Path temp = tempFile(target);
+        MessageDigest digest = newDigest();
+        try (PendingOutput output = new PendingOutput(temp)) {
+            try (YamlWriter writer = new YamlWriter(new BufferedWriter(new OutputStreamWriter(new DigestOutputStream(output, digest), StandardCharsets.UTF_8)))) {
+                writer.setTarget(target.toString());
+                contents.accept(writer);
+            }
+            byte[] hash = digest.digest();
+
+            @Nullable
+            BasicFileAttributes existing = readAttributes(target);
+            if (existing != null && existing.size() == output.size() && Arrays.equals(hash, digestOf(target, existing, cached))) {
+                output.discard();
+                return new Outcome(false, new Digest(hash, existing.size(), existing.lastModifiedTime()));
+            }
+
+            output.commit();
+            replace(temp, target);
+            syncDirectory(target.getParent());
+            @Nullable
+            BasicFileAttributes written = readAttributes(target);
+            return new Outcome(true, written == null ? null : new Digest(hash, written.size(), written.lastModifiedTime()));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // a cached digest is only trusted while the file still looks the same as when it was taken
+    private static byte[] digestOf(Path file, BasicFileAttributes attributes, @Nullable Digest cached) throws IOException {
+        if (cached != null && cached.size() == attributes.size() && cached.modified().equals(attributes.lastModifiedTime())) {
+            return cached.hash();
+        }
+        MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] chunk = new byte[8192];
+            int length;
+            while ((length = in.read(chunk)) != -1) {
+                digest.update(chunk, 0, length);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is required to be supported", e);
+        }
+    }
+
+    @Nullable
+    private static BasicFileAttributes readAttributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static Path tempFile(Path target) throws IOException {
+        Path directory = target.getParent();
+        Files.createDirectories(directory);
+        return directory.resolve(target.getFileName() + TEMP_SUFFIX);
+    }
+
+    private static void replace(Path temp, Path target) throws IOException {
+        // fsync applies to the file rather than the handle, so the one used for writing can already be closed
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // not every platform allows opening directories, the move itself has already happened
+        }
+    }
+
+    private static final class FileState {
+        final Path file;
+
+        @Nullable
+        PendingSave pending;
+        // the result of the save taken off pending that is being written, so flush and close can wait for it too
+        @Nullable
+        CompletableFuture<Boolean> writing;
+        long generation;
+        long writtenGeneration;
+        @Nullable
+        Digest digest;
+
+        FileState(Path file) {
+            this.file = file;
+        }
+    }
+
+    private static final class PendingSave {
+        final FileState state;
+        final long generation;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        IOConsumer<YamlWriter> contents;
+        ScheduledFuture<?> timer;
+
+        PendingSave(FileState state, long generation) {
+            this.state = state;
+            this.generation = generation;
+        }
+    }
+
+    private record Digest(byte[] hash, long size, FileTime modified) {}
+
+    private record Outcome(boolean written, @Nullable Digest digest) {}
+
+    /**
+     * Holds output in memory until it grows past IN_MEMORY_OUTPUT, and in the temporary file after that.
+     */
+    private static final class PendingOutput extends OutputStream {
+        private final Path temp;
+
+        @Nullable
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        @Nullable
+        private OutputStream file;
+        private long size;
+
+        PendingOutput(Path temp) {
+            this.temp = temp;
+        }
+
+        long size() {
+            return size;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (buffer != null && buffer.size() + length > IN_MEMORY_OUTPUT) {
+                spill();
+            }
+            if (buffer != null) {
+                buffer.write(bytes, offset, length);
+            } else {
+                file.write(bytes, offset, length);
+            }
+            size += length;
+        }
+
+        private void spill() throws IOException {
+            file = new BufferedOutputStream(Files.newOutputStream(temp));
+            buffer.writeTo(file);
+            buffer = null;
+        }
+
+        /**
+         * Makes sure everything written so far is in the temporary file.
+         */
+        void commit() throws IOException {
+            if (buffer != null) {
+                spill();
+            }
+            file.close();
+        }
+
+        void discard() throws IOException {
+            buffer = null;
+            if (file != null) {
+                file.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // called once by the writer when it finishes, and again by the owner once the output has been committed or discarded
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+}
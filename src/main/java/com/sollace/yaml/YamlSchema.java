@@ -0,0 +1,105 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+public class YamlSchema {
+    private final Map<String, Field> fields = new LinkedHashMap<>();
+
+    private boolean rejectUnknownKeys;
+
+    public YamlSchema require(String key, YamlObjectType type) {
+        return field(key, type, true, null);
+    }
+
+    public YamlSchema require(String key, YamlObjectType type, YamlSchema schema) {
+        return field(key, type, true, schema);
+    }
+
+    public YamlSchema require(String key, YamlSchema schema) {
+        return field(key, YamlObjectType.MAP, true, schema);
+    }
+
+    public YamlSchema optional(String key, YamlObjectType type) {
+        return field(key, type, false, null);
+    }
+
+    public YamlSchema optional(String key, YamlObjectType type, YamlSchema schema) {
+        return field(key, type, false, schema);
+    }
+
+    public YamlSchema optional(String key, YamlSchema schema) {
+        return field(key, YamlObjectType.MAP, false, schema);
+    }
+
+    public YamlSchema rejectUnknownKeys() {
+        rejectUnknownKeys = true;
+        return this;
+    }
+
+    public YamlSchema skipUnknownKeys() {
+        rejectUnknownKeys = false;
+        return this;
+    }
+
+    public boolean rejectsUnknownKeys() {
+        return rejectUnknownKeys;
+    }
+
+    @Nullable
+    public Field get(String key) {
+        return fields.get(key);
+    }
+
+    private YamlSchema field(String key, YamlObjectType type, boolean required, @Nullable YamlSchema schema) {
+        if (schema != null && !type.isBlockScoped()) {
+            throw new IllegalArgumentException("Nested schemas can only be applied to block types. Got " + type);
+        }
+        fields.put(key, new Field(key, type, required, schema));
+        return this;
+    }
+
+    /**
+     * Returns a copy of this schema that leaves checking for required keys to the caller, for reading a mapping a few keys at a time.
+     */
+    YamlSchema withoutRequiredKeys() {
+        YamlSchema copy = new YamlSchema();
+        copy.rejectUnknownKeys = rejectUnknownKeys;
+        fields.forEach((key, field) -> copy.fields.put(key, new Field(key, field.type(), false, field.schema())));
+        return copy;
+    }
+
+    void checkRequired(JsonObject json) throws IOException {
+        for (Field field : fields.values()) {
+            if (field.required() && !json.has(field.key())) {
+                throw new IOException("Missing required key: " + field.key());
+            }
+        }
+    }
+
+    public record Field(String key, YamlObjectType type, boolean required, @Nullable YamlSchema schema) {
+        public boolean isScalar() {
+            return !type.isBlockScoped();
+        }
+
+        JsonElement check(JsonElement value) throws IOException {
+            boolean valid = switch (type) {
+                case MAP -> value.isJsonObject();
+                case SEQUENCE, SET -> value.isJsonArray();
+                case STRING -> value.isJsonPrimitive();
+                case BOOL -> value.isJsonPrimitive() && value.getAsJsonPrimitive().isBoolean();
+                default -> value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber();
+            };
+            if (!valid) {
+                throw new IOException("Expected " + type + " for key " + key + " but got " + value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sollace.yaml;
+
+import java.time.Instant;
+
+/**
+ * Converts between the text of a scalar with a !!tag and the value it stands for.
+ *
+ * Readers look tags up in their YamlTags by name, so a tag only needs registering to be read.
+ * Decoders are handed the scalar's characters as they were collected, without first turning them into a String.
+ *
+ * @param <V> the type of value the tag decodes to
+ */
+public interface YamlTag<V> {
+    /**
+     * Base64 encoded bytes. Whitespace and line breaks between characters are ignored.
+     */
+    YamlTag<byte[]> BINARY = new BinaryTag();
+    /**
+     * A date, or a date and time with an optional offset from UTC, as defined by the yaml timestamp type.
+     * Times without an offset and dates on their own are taken to be in UTC.
+     */
+    YamlTag<Instant> TIMESTAMP = new TimestampTag();
+
+    /**
+     * The name the tag is written with after the !!.
+     */
+    String name();
+
+    /**
+     * Decodes the text of a scalar.
+     *
+     * @throws IllegalArgumentException if the text is not a valid value for this tag
+     */
+    V decode(CharSequence text);
+
+    /**
+     * Appends the text of a scalar that decodes back to the value.
+     */
+    void encode(V value, StringBuilder out);
+}
@@ -0,0 +1,36 @@
+package com.sollace.yaml;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The tags a YamlReader can decode in addition to the types built into YamlObjectType, looked up by name.
+ *
+ * Registries are immutable, so one can be shared between readers and extended without affecting the others.
+ */
+public final class YamlTags {
+    public static final YamlTags NONE = new YamlTags(Map.of());
+    public static final YamlTags STANDARD = NONE.with(YamlTag.BINARY).with(YamlTag.TIMESTAMP);
+
+    private final Map<String, YamlTag<?>> tags;
+
+    private YamlTags(Map<String, YamlTag<?>> tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * Returns a registry that also has the tag, in place of any with the same name.
+     */
+    public YamlTags with(YamlTag<?> tag) {
+        Map<String, YamlTag<?>> tags = new HashMap<>(this.tags);
+        tags.put(tag.name(), tag);
+        return new YamlTags(Map.copyOf(tags));
+    }
+
+    @Nullable
+    public YamlTag<?> get(String name) {
+        return tags.get(name);
+    }
+}
@@ -18,6 +18,44 @@ public class YamlTokenizer implements Closeable, Iterable<YamlTokenizer.Token> {
 
     private final List<Token> bufferedTokens = new ArrayList<>();
 
+    private static final int WHITESPACE = 1;
+    private static final int BLANK = 2;
+    private static final int LINE_END = 4;
+    private static final int TEXT_END = 8;
+    private static final int FLOW_TEXT_END = 16;
+
+    private static final int QUOTED_CHUNK = 8192;
+
+    private static final byte[] CHARACTER_CLASSES = new byte[128];
+    static {
+        for (char c = 0; c < CHARACTER_CLASSES.length; c++) {
+            if (Character.isWhitespace(c)) {
+                CHARACTER_CLASSES[c] |= WHITESPACE | TEXT_END;
+                if (c != '\r' && c != '\n') {
+                    CHARACTER_CLASSES[c] |= BLANK;
+                }
+            }
+        }
+        for (char c : "\0\r\n".toCharArray()) {
+            CHARACTER_CLASSES[c] |= LINE_END;
+        }
+        for (char c : "\0\"'\\:]}".toCharArray()) {
+            CHARACTER_CLASSES[c] |= TEXT_END;
+        }
+        for (char c : ",[{".toCharArray()) {
+            CHARACTER_CLASSES[c] |= FLOW_TEXT_END;
+        }
+    }
+
+    private int flowDepth;
+
+    private long tokenCount;
+
+    private int line = 1;
+    private long lineStart;
+
+    private int maxTokenLength = Integer.MAX_VALUE;
+
     public YamlTokenizer(Reader in) {
         this.in = new CharBuf(in);
     }
@@ -26,12 +64,109 @@ public class YamlTokenizer implements Closeable, Iterable<YamlTokenizer.Token> {
         return !bufferedTokens.isEmpty() || in.ready();
     }
 
+    /**
+     * Returns the number of tokens read from the underlying stream so far, not counting pushed back tokens read again.
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Returns the number of characters read from the underlying stream so far.
+     */
+    public long getCharacterCount() {
+        return in.offset();
+    }
+
+    public void setLimits(YamlLimits limits) {
+        in.setMaxLength(limits.maxCharacters(), this::error);
+        maxTokenLength = limits.maxScalarLength();
+    }
+
+    /**
+     * Sets the number of the first line, for when the text being read starts part way into a document.
+     */
+    void setFirstLine(int line) {
+        this.line = line;
+    }
+
+    /**
+     * Returns the line the tokenizer has read up to, starting from 1.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column the tokenizer has read up to, starting from 1.
+     */
+    public int getColumn() {
+        return (int)(in.offset() - lineStart) + 1;
+    }
+
+    IOException error(String message) {
+        return error(message, getLine(), getColumn());
+    }
+
+    IOException error(String message, int line, int column) {
+        return new IOException(message + " at line " + line + ", column " + column);
+    }
+
+    void checkScalarLength(long length) throws IOException {
+        if (length > maxTokenLength) {
+            throw error("Scalar exceeds the limit of " + maxTokenLength + " characters");
+        }
+    }
+
+    void enterFlow() {
+        flowDepth++;
+    }
+
+    void exitFlow() {
+        flowDepth--;
+    }
+
     public void pushBack(Token token) {
         bufferedTokens.add(0, token);
     }
 
+    /**
+     * Reads the next token, skipping comments and runs of empty lines.
+     *
+     * Pushed back tokens are read first, and whatever follows them is skipped straight from the character buffer
+     * once they run out, so peeking ahead doesn't send the rest of a comment or run of line breaks through the tokenizer.
+     */
     public Token readToken() throws IOException {
-        return skipComments(nextSkipEmptyLines());
+        Token token = nextToken();
+        if (token.is(Token.Type.NEWLINE)) {
+            skipLineBreakTokens();
+        } else if (token.is(Token.Type.WHITESPACE)) {
+            if (!bufferedTokens.isEmpty()) {
+                if (bufferedTokens.get(0).is(Token.Type.NEWLINE)) {
+                    return token;
+                }
+            } else {
+                char next = in.peek(0);
+                if (next == '\r' || next == '\n') {
+                    in.read();
+                    skipLineBreak(next);
+                    skipLineBreaks();
+                    pushBack(Token.NEWLINE);
+                    return token;
+                }
+            }
+        } else if (!token.isCommentBegin()) {
+            return token;
+        }
+
+        if (token.isCommentBegin() || isCommentNext()) {
+            skipComment();
+            token = nextToken();
+            if (token.is(Token.Type.NEWLINE)) {
+                skipLineBreakTokens();
+            }
+        }
+        return token;
     }
 
     public Token peekToken() throws IOException {
@@ -58,132 +193,398 @@ public class YamlTokenizer implements Closeable, Iterable<YamlTokenizer.Token> {
         return token;
     }
 
-    private Token skipComments(Token token) throws IOException {
-        if (token.is(Token.Type.NEWLINE) || token.is(Token.Type.WHITESPACE)) {
-            Token next = nextSkipEmptyLines();
-            if (!next.isCommentBegin()) {
-                pushBack(next);
-                return token;
-            }
-            token = next;
+    /**
+     * Reads the rest of a quoted scalar straight from the character buffer, once its opening quote has been read.
+     * Runs of plain characters are copied in bulk, escapes are decoded in place, and line breaks are folded
+     * the way yaml folds flow scalars.
+     *
+     * Anything but a StringBuilder is handed the scalar in chunks of around QUOTED_CHUNK characters as it is read,
+     * so a long scalar never has to be held in memory.
+     *
+     * @return false without reading anything if tokens have been pushed back, as the scalar then has to be read from those
+     */
+    boolean readQuoted(char quote, Appendable target) throws IOException {
+        if (!bufferedTokens.isEmpty()) {
+            return false;
         }
+        tokenCount++;
+        boolean escapes = quote == '"';
+        StringBuilder out = target instanceof StringBuilder builder ? builder : new StringBuilder();
+        // characters already handed to the target, which are counted as part of out for the length check
+        long initialLength = out.length();
+        do {
+            if (out != target && out.length() >= QUOTED_CHUNK) {
+                target.append(out);
+                initialLength -= out.length();
+                out.setLength(0);
+            }
+            if (!in.fill()) {
+                throw error("Unterminated string");
+            }
+            char[] chars = in.array();
+            int start = in.position();
+            int end = in.limit();
+            int i = start;
+            // end of the run without its trailing blanks, which are dropped if a line break follows them
+            int content = start;
+            char c = '\0';
+            while (i < end) {
+                c = chars[i];
+                if (c == quote || c == '\r' || c == '\n' || (escapes && c == '\\')) {
+                    break;
+                }
+                i++;
+                if (c != ' ' && c != '\t') {
+                    content = i;
+                }
+            }
 
-        if (token.isCommentBegin()) {
-            do {
-                token = nextSkipEmptyLines();
-                if (token.is(Token.Type.END) || token.is(Token.Type.NEWLINE)) {
-                    return token;
+            if (i == end) {
+                // the run continues past the buffer, so its trailing blanks are left until we know what follows them
+                checkScalarLength(out.length() - initialLength + end - start);
+                out.append(chars, start, content - start);
+                in.skip(content - start);
+                if (content == start && !in.require(end - start + 1)) {
+                    throw error("Unterminated string");
                 }
-            } while (true);
-        }
+                continue;
+            }
 
-        return token;
+            in.skip(i - start + 1);
+            if (c == quote) {
+                out.append(chars, start, i - start);
+                if (escapes || in.peek(0) != quote) {
+                    checkScalarLength(out.length() - initialLength);
+                    if (out != target) {
+                        target.append(out);
+                    }
+                    return true;
+                }
+                in.skip(1);
+                out.append(quote);
+            } else if (c == '\\') {
+                out.append(chars, start, i - start);
+                readEscape(out);
+            } else {
+                out.append(chars, start, content - start);
+                skipLineBreak(c);
+                fold(out, false);
+            }
+            checkScalarLength(out.length() - initialLength);
+        } while (true);
     }
 
-    private Token nextSkipEmptyLines() throws IOException {
-        Token token = nextToken();
-        if (token.is(Token.Type.NEWLINE)) {
-            do {
-                Token next = nextToken();
-                if (!next.is(Token.Type.NEWLINE)) {
-                    pushBack(next);
-                    break;
-                }
-            } while (true);
+    /**
+     * Skips the rest of a quoted scalar, once its opening quote has been read, without keeping any of it.
+     *
+     * @return false without reading anything if tokens have been pushed back, as the scalar then has to be read from those
+     */
+    boolean skipQuoted(char quote) throws IOException {
+        if (!bufferedTokens.isEmpty()) {
+            return false;
         }
-        return token;
+        tokenCount++;
+        boolean escapes = quote == '"';
+        do {
+            char c = in.read();
+            if (c == '\0') {
+                throw error("Unterminated string");
+            }
+            if (c == quote) {
+                if (escapes || in.peek(0) != quote) {
+                    return true;
+                }
+                in.skip(1);
+            } else if (escapes && c == '\\') {
+                if (!in.fill()) {
+                    throw unterminatedEscape();
+                }
+                c = in.read();
+                if (c == '\r' || c == '\n') {
+                    skipLineBreak(c);
+                }
+            } else if (c == '\r' || c == '\n') {
+                skipLineBreak(c);
+            }
+        } while (true);
     }
 
-    private Token doReadToken() throws IOException {
+    private void readEscape(StringBuilder out) throws IOException {
+        if (!in.fill()) {
+            throw unterminatedEscape();
+        }
         char c = in.read();
-
-        if (c == '\0') {
-            return Token.END;
+        if (c == '\r' || c == '\n') {
+            skipLineBreak(c);
+            fold(out, true);
+            return;
+        }
+        int digits = EscapeSequences.hexDigits(c);
+        if (digits == 0) {
+            int value = EscapeSequences.unescape(c);
+            if (value == -1) {
+                throw error("Unknown escape sequence \\" + c);
+            }
+            out.append((char)value);
+            return;
         }
 
-        if (c == '\r' || c == '\n') {
-            char c2 = in.peek(0);
-            if (c != c2 && (c2 == '\r' || c2 == '\n')) {
-                in.read();
+        int codepoint = 0;
+        for (int i = 0; i < digits; i++) {
+            int digit = Character.digit(in.peek(i), 16);
+            if (digit == -1) {
+                throw error("Invalid escape sequence \\" + c);
             }
-            return Token.NEWLINE;
+            codepoint = codepoint << 4 | digit;
+        }
+        if (!Character.isValidCodePoint(codepoint)) {
+            throw error("Invalid code point in escape sequence \\" + c);
         }
+        in.skip(digits);
+        if (Character.isBmpCodePoint(codepoint)) {
+            out.append((char)codepoint);
+        } else {
+            out.append(Character.highSurrogate(codepoint)).append(Character.lowSurrogate(codepoint));
+        }
+    }
 
-        if (c == ':' || c == '-') {
-            char next = in.peek(0);
-            if (Character.isWhitespace(next) || (c == ':' && (next == '\r' || next == '\n'))) {
-                return new Token(Token.Type.SEPARATOR, Character.toString(c) + " ");
+    // the backslash has already been read, so the error points back at it
+    private IOException unterminatedEscape() {
+        return error("Unterminated escape sequence", getLine(), getColumn() - 1);
+    }
+
+    // a line break becomes a space, unless it is followed by empty lines which are kept as line breaks instead
+    private void fold(StringBuilder out, boolean escaped) throws IOException {
+        int emptyLines = 0;
+        do {
+            int blanks = 0;
+            char c;
+            while ((c = in.peek(blanks)) == ' ' || c == '\t') {
+                checkScalarLength(++blanks);
+            }
+            in.skip(blanks);
+            if (c != '\r' && c != '\n') {
+                break;
+            }
+            in.skip(1);
+            skipLineBreak(c);
+            emptyLines++;
+        } while (true);
+
+        if (emptyLines == 0) {
+            if (!escaped) {
+                out.append(' ');
+            }
+        } else {
+            for (int i = 0; i < emptyLines; i++) {
+                out.append('\n');
             }
         }
+    }
+
+    private static boolean isCommentBegin(char c) {
+        return c == '#' || c == '%';
+    }
 
-        if (c == '?') {
-            if (Character.isWhitespace(in.peek(0))) {
-                in.read();
-                return new Token(Token.Type.SEPARATOR, Constants.SET_ELEMENT_PREFIX);
+    private boolean isCommentNext() throws IOException {
+        return bufferedTokens.isEmpty() ? isCommentBegin(in.peek(0)) : bufferedTokens.get(0).isCommentBegin();
+    }
+
+    // comments are held to the same limit as scalars, so a single unbroken line can't be skipped forever
+    private void skipComment() throws IOException {
+        while (!bufferedTokens.isEmpty()) {
+            Token token = bufferedTokens.get(0);
+            if (token.is(Token.Type.NEWLINE) || token.is(Token.Type.END)) {
+                return;
             }
-            return new Token(Token.Type.CONTROL_CHARACTER, Constants.KEY_INDICATOR);
+            bufferedTokens.remove(0);
         }
 
-        if (c == '#' || c == '%' || c == '\\') {
-            return new Token(Token.Type.CONTROL_CHARACTER, Character.toString(c));
+        long length = 0;
+        while (in.fill()) {
+            char[] chars = in.array();
+            int start = in.position();
+            int end = in.limit();
+            int i = start;
+            while (i < end && (classOf(chars[i]) & LINE_END) == 0) {
+                i++;
+            }
+            length += i - start;
+            if (length > maxTokenLength) {
+                throw error("Comment exceeds the limit of " + maxTokenLength + " characters");
+            }
+            in.skip(i - start);
+            if (i < end) {
+                return;
+            }
         }
+    }
 
-        if (c == '!' && in.peek(0) == '!' && !Character.isWhitespace(in.peek(1))) {
+    private void skipLineBreak(char c) throws IOException {
+        char c2 = in.peek(0);
+        if (c != c2 && (c2 == '\r' || c2 == '\n')) {
             in.read();
-            return new Token(Token.Type.CONTROL_CHARACTER, Constants.TYPE_COERSION_INDICATOR);
         }
+        line++;
+        lineStart = in.offset();
+    }
 
-        if (c == '"' || c == '\'') {
-            return new Token(Token.Type.QUOTE, Character.toString(c));
+    private void skipLineBreakTokens() throws IOException {
+        while (!bufferedTokens.isEmpty()) {
+            if (!bufferedTokens.get(0).is(Token.Type.NEWLINE)) {
+                return;
+            }
+            bufferedTokens.remove(0);
         }
+        skipLineBreaks();
+    }
 
-        if (c == '[' || c == ']' || c == '{' || c == '}') {
-            return new Token(Token.Type.MODE_CHANGE, Character.toString(c));
+    private void skipLineBreaks() throws IOException {
+        char c;
+        while ((c = in.peek(0)) == '\r' || c == '\n') {
+            in.read();
+            skipLineBreak(c);
         }
+    }
 
-        StringBuffer buffer = new StringBuffer();
-        buffer.append(c);
-
-        if (Character.isWhitespace(c)) {
-            do {
-                c = in.peek(0);
-                if (c == '\0' || c == '\n' || c == '\r' || c == '"' || c == '\'' || c == '\\' || c == '[' || c == '{') {
-                    break;
-                } else if (!Character.isWhitespace(c)) {
-                    if (buffer.length() == 1 && (c == '|' || c == '>')) {
-                        buffer.append(in.read());
-
-                        c = in.peek(0);
-                        if (c == '-') {
-                            buffer.append(in.read());
-                        }
+    private Token doReadToken() throws IOException {
+        tokenCount++;
+        char c = in.read();
 
-                        return new Token(Token.Type.CONTROL_CHARACTER, buffer.toString());
-                    }
-                    break;
+        switch (c) {
+            case '\0':
+                return Token.END;
+            case '\r':
+            case '\n':
+                skipLineBreak(c);
+                return Token.NEWLINE;
+            case ':':
+                if (isWhitespace(in.peek(0))) {
+                    return Token.KEY_VALUE_SEPARATOR;
                 }
-
-                c = in.peek(1);
-                if (c == '|' || c == '>') {
-                    break;
+                break;
+            case '-':
+                if (isWhitespace(in.peek(0))) {
+                    return Token.ELEMENT_SEPARATOR;
+                }
+                break;
+            case '?':
+                if (isWhitespace(in.peek(0))) {
+                    in.read();
+                    return Token.SET_ELEMENT_SEPARATOR;
                 }
+                return Token.KEY_INDICATOR;
+            case '#':
+                return Token.COMMENT;
+            case '%':
+                return Token.DIRECTIVE;
+            case '\\':
+                return Token.ESCAPE;
+            case '!':
+                if (in.peek(0) == '!' && !isWhitespace(in.peek(1))) {
+                    in.read();
+                    return Token.TYPE_COERSION;
+                }
+                break;
+            case '&':
+            case '*':
+                char next = in.peek(0);
+                if (next != '\0' && !isWhitespace(next)) {
+                    return c == '&' ? Token.ANCHOR : Token.ALIAS;
+                }
+                break;
+            case '"':
+                return Token.DOUBLE_QUOTE;
+            case '\'':
+                return Token.SINGLE_QUOTE;
+            case '[':
+                return Token.ARRAY_START;
+            case ']':
+                return Token.ARRAY_END;
+            case '{':
+                return Token.MAP_START;
+            case '}':
+                return Token.MAP_END;
+            case ',':
+                if (flowDepth > 0) {
+                    return Token.FLOW_SEPARATOR;
+                }
+                break;
+        }
 
+        return (classOf(c) & BLANK) != 0 ? readWhitespace(c) : readText();
+    }
+
+    private Token readWhitespace(char first) throws IOException {
+        char c = in.peek(0);
+        if (c == '|' || c == '>') {
+            StringBuilder buffer = new StringBuilder(3).append(first).append(in.read());
+            if (in.peek(0) == '-') {
                 buffer.append(in.read());
-            } while (true);
+            }
+            return new Token(Token.Type.CONTROL_CHARACTER, buffer.toString());
+        }
 
-            return new Token(Token.Type.WHITESPACE, buffer.toString());
-        } else {
-            do {
-                c = in.peek(0);
-                if (c == '\0' || c == '\n' || c == '\r' || c == '"' || c == '\'' || c == '\\' || c == ':' || c == ']' || c == '}' || Character.isWhitespace(c)) {
-                    break;
-                }
+        // leave the last blank of the run in place when it introduces a block scalar indicator
+        int length = 0;
+        while ((classOf(in.peek(length)) & BLANK) != 0) {
+            c = in.peek(length + 1);
+            if (c == '|' || c == '>') {
+                break;
+            }
+            length++;
+            checkScalarLength(length);
+        }
 
-                buffer.append(in.read());
-            } while (true);
+        int start = in.position() - 1;
+        in.skip(length);
+        return new Token(Token.Type.WHITESPACE, new String(in.array(), start, length + 1));
+    }
 
-            return new Token(Token.Type.TEXT, buffer.toString());
+    private Token readText() throws IOException {
+        int stop = flowDepth > 0 ? TEXT_END | FLOW_TEXT_END : TEXT_END;
+        char[] chars = in.array();
+        int start = in.position() - 1;
+        int end = in.limit();
+        int i = start + 1;
+        while (i < end && (classOf(chars[i]) & stop) == 0) {
+            i++;
+        }
+        checkScalarLength(i - start);
+        in.skip(i - start - 1);
+        if (i < end) {
+            return new Token(Token.Type.TEXT, new String(chars, start, i - start));
         }
+
+        // the token runs past the end of the buffer
+        StringBuilder buffer = new StringBuilder().append(chars, start, i - start);
+        while (in.fill()) {
+            chars = in.array();
+            start = in.position();
+            end = in.limit();
+            i = start;
+            while (i < end && (classOf(chars[i]) & stop) == 0) {
+                i++;
+            }
+            checkScalarLength(buffer.length() + i - start);
+            buffer.append(chars, start, i - start);
+            in.skip(i - start);
+            if (i < end) {
+                break;
+            }
+        }
+        return new Token(Token.Type.TEXT, buffer.toString());
+    }
+
+    private static boolean isWhitespace(char c) {
+        return (classOf(c) & WHITESPACE) != 0;
+    }
+
+    private static int classOf(char c) {
+        if (c < CHARACTER_CLASSES.length) {
+            return CHARACTER_CLASSES[c];
+        }
+        return Character.isWhitespace(c) ? WHITESPACE | BLANK | TEXT_END : 0;
     }
 
     @Override
@@ -195,6 +596,24 @@ public class YamlTokenizer implements Closeable, Iterable<YamlTokenizer.Token> {
         static final Token END = new Token(Type.END, "");
         static final Token NEWLINE = new Token(Type.NEWLINE, System.lineSeparator());
         static final Token EMPTY = new Token(Token.Type.WHITESPACE, "");
+
+        static final Token KEY_VALUE_SEPARATOR = new Token(Type.SEPARATOR, Constants.KEY_VALUE_PAIR_SEPARATOR);
+        static final Token ELEMENT_SEPARATOR = new Token(Type.SEPARATOR, Constants.ARRAY_ELEMENT_PREFIX);
+        static final Token SET_ELEMENT_SEPARATOR = new Token(Type.SEPARATOR, Constants.SET_ELEMENT_PREFIX);
+        static final Token FLOW_SEPARATOR = new Token(Type.SEPARATOR, Constants.FLOW_SEPARATOR);
+        static final Token KEY_INDICATOR = new Token(Type.CONTROL_CHARACTER, Constants.KEY_INDICATOR);
+        static final Token COMMENT = new Token(Type.CONTROL_CHARACTER, Constants.COMMENT_PREFIX);
+        static final Token DIRECTIVE = new Token(Type.CONTROL_CHARACTER, Constants.DIRECTIVE_PREFIX);
+        static final Token ESCAPE = new Token(Type.CONTROL_CHARACTER, "\\");
+        static final Token TYPE_COERSION = new Token(Type.CONTROL_CHARACTER, Constants.TYPE_COERSION_INDICATOR);
+        static final Token ANCHOR = new Token(Type.CONTROL_CHARACTER, Constants.ANCHOR_PREFIX);
+        static final Token ALIAS = new Token(Type.CONTROL_CHARACTER, Constants.ALIAS_PREFIX);
+        static final Token DOUBLE_QUOTE = new Token(Type.QUOTE, "\"");
+        static final Token SINGLE_QUOTE = new Token(Type.QUOTE, "'");
+        static final Token ARRAY_START = new Token(Type.MODE_CHANGE, Constants.ARRAY_START);
+        static final Token ARRAY_END = new Token(Type.MODE_CHANGE, Constants.ARRAY_END);
+        static final Token MAP_START = new Token(Type.MODE_CHANGE, Constants.MAP_START);
+        static final Token MAP_END = new Token(Type.MODE_CHANGE, Constants.MAP_END);
         public enum Type {
             TEXT,
             WHITESPACE,
@@ -0,0 +1,119 @@
+package com.sollace.yaml;
+
+import java.io.IOException;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Builds the nodes a YamlReader reads a document into.
+ *
+ * The reader calls startMapping or startSequence when a collection begins, passes it each entry or element
+ * as soon as that has been built, and then calls endMapping or endSequence to get the finished node.
+ * Collections under construction and finished nodes are both of type T, so a builder can return the same
+ * object from both or swap a mutable accumulator for an immutable result when it ends.
+ *
+ * @param <T> the type of node being built
+ */
+public interface YamlTreeBuilder<T> {
+    /**
+     * Builds into gson's tree, resolving plain scalars as they are read.
+     */
+    static YamlTreeBuilder<JsonElement> gson() {
+        return GsonTreeBuilder.EAGER;
+    }
+
+    T startMapping() throws IOException;
+
+    /**
+     * Called with each key of a mapping before its value is read, ahead of the put that adds the finished value.
+     * Merge keys are not announced, their entries come through merge instead.
+     */
+    default void key(T mapping, String key) throws IOException {
+    }
+
+    void put(T mapping, String key, T value) throws IOException;
+
+    T endMapping(T mapping) throws IOException;
+
+    T startSequence() throws IOException;
+
+    void add(T sequence, T value) throws IOException;
+
+    T endSequence(T sequence) throws IOException;
+
+    /**
+     * Builds a scalar from its text. Plain scalars are left for the builder to resolve into null, a boolean, a number
+     * or a string, which the helpers in TypeCoersion can do the same way the gson builder does.
+     */
+    T scalar(ScalarKind kind, String text);
+
+    /**
+     * Builds a scalar explicitly tagged as a number, such as !!int or !!double.
+     */
+    T number(Number value);
+
+    /**
+     * Builds a scalar explicitly tagged as !!bool.
+     */
+    T bool(boolean value);
+
+    /**
+     * Builds the value of a flow mapping key that has none, as in {a, b: 1}.
+     */
+    T nullValue();
+
+    /**
+     * Builds a scalar decoded by one of the reader's registered tags, such as the byte[] of a !!binary scalar.
+     * By default it becomes a string of the text the tag encodes it back to.
+     */
+    default <V> T tagged(YamlTag<V> tag, V value) {
+        StringBuilder text = new StringBuilder();
+        tag.encode(value, text);
+        return scalar(ScalarKind.QUOTED, text.toString());
+    }
+
+    /**
+     * Adds the entries of a mapping merged in through a merge key ({@literal <<}) to the mapping, skipping any it already has.
+     * The value is either a mapping or a sequence of them.
+     *
+     * @return the number of entries that were added
+     */
+    default int merge(T mapping, T value) throws IOException {
+        throw new IOException("Merge keys are not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Returns the node an alias resolves to, given the node its anchor was read into.
+     * The node is shared by default, so builders of mutable nodes should copy it.
+     */
+    default T alias(T anchored) {
+        return anchored;
+    }
+
+    /**
+     * Called before reading a node the reader keeps hold of after it is finished: an anchored node, the value of a merge key
+     * or an element of a !!set. Builders that hand nodes off as they go should hold on to everything read until the
+     * matching endRetained, which is given the finished node and returns the one the reader keeps.
+     */
+    default void beginRetained() {
+    }
+
+    default T endRetained(T node) {
+        return node;
+    }
+
+    enum ScalarKind {
+        /**
+         * An unquoted scalar, whose type depends on its text.
+         */
+        PLAIN,
+        /**
+         * A single or double quoted scalar, or one tagged !!str. Always a string.
+         */
+        QUOTED,
+        /**
+         * A literal (|) or folded ({@literal >}) block scalar. Always a string.
+         */
+        BLOCK
+    }
+}
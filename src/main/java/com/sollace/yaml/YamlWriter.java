@@ -1,18 +1,30 @@
 package com.sollace.yaml;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
 import org.jetbrains.annotations.Nullable;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+
+import jdk.jfr.FlightRecorder;
+import com.sollace.yaml.util.CountingWriter;
 import com.sollace.yaml.util.IOBiConsumer;
 
 public class YamlWriter implements AutoCloseable {
@@ -22,18 +34,96 @@ public class YamlWriter implements AutoCloseable {
 
     protected String indent = "  ";
 
+    private int flowSequenceLimit = -1;
+    private boolean flowNumericSequences;
+
+    @Nullable
+    private ForkJoinPool pool;
+    private int parallelDepth;
+
+    private boolean alignValues = true;
+
     private List<Line> lines = new ArrayList<>();
+    private int flushedLines;
+    private boolean headerWritten;
+
+    private final Stack<int[]> elementIndices = new Stack<>();
+
+    // only set up while the write event is being recorded
+    @Nullable
+    private final WriteEvent writeEvent;
+    @Nullable
+    private final CountingWriter counter;
+    @Nullable
+    private String target;
 
     private BlockScope currentScope;
     private Line currentLine;
 
     public YamlWriter(Writer out) {
-        this.out = out;
+        WriteEvent event = FlightRecorder.isInitialized() ? new WriteEvent() : null;
+        if (event != null && event.isEnabled()) {
+            event.begin();
+            writeEvent = event;
+            counter = new CountingWriter(out);
+            this.out = counter;
+        } else {
+            writeEvent = null;
+            counter = null;
+            this.out = out;
+        }
         beginScope();
     }
 
+    private YamlWriter(YamlWriter parent) {
+        out = Writer.nullWriter();
+        writeEvent = null;
+        counter = null;
+        lastKey = parent.lastKey;
+        indent = parent.indent;
+        flowSequenceLimit = parent.flowSequenceLimit;
+        flowNumericSequences = parent.flowNumericSequences;
+        alignValues = parent.alignValues;
+        pool = parent.pool;
+        parallelDepth = parent.parallelDepth - 1;
+        currentScope = parent.currentScope;
+        currentLine = parent.currentLine;
+    }
+
+    /**
+     * Sets the name reported for this document in flight recorder events, such as the path of the file being written.
+     */
+    public void setTarget(@Nullable String target) {
+        this.target = target;
+    }
+
+    public void setFlowSequenceLimit(int maxElements) {
+        flowSequenceLimit = maxElements;
+    }
+
+    public void setFlowNumericSequences(boolean flowNumericSequences) {
+        this.flowNumericSequences = flowNumericSequences;
+    }
+
+    /**
+     * Renders the map and sequence values found up to the given depth on the pool, one task per value.
+     * The written output is the same as when writing sequentially.
+     */
+    public void setParallel(@Nullable ForkJoinPool pool, int depth) {
+        this.pool = pool;
+        parallelDepth = pool == null ? 0 : depth;
+    }
+
+    /**
+     * Sets whether values within the same block are padded to start on the same column.
+     * Lines can only be flushed before the document is closed when alignment is disabled.
+     */
+    public void setAlignValues(boolean alignValues) {
+        this.alignValues = alignValues;
+    }
+
     public int getLineNumber() {
-        return lines.size();
+        return flushedLines + lines.size();
     }
 
     public int getColumnNumber() {
@@ -42,7 +132,9 @@ public class YamlWriter implements AutoCloseable {
 
     private void nextLine() {
         currentLine = new Line(currentScope);
-        currentScope.lines.add(currentLine);
+        if (alignValues) {
+            currentScope.lines.add(currentLine);
+        }
         lines.add(currentLine);
     }
 
@@ -94,6 +186,33 @@ public class YamlWriter implements AutoCloseable {
         endScope();
     }
 
+    public void beginObject() throws IOException {
+        beginScope();
+    }
+
+    public void endObject() throws IOException {
+        endScope();
+    }
+
+    public void beginArray() throws IOException {
+        beginScope();
+        elementIndices.push(new int[1]);
+    }
+
+    public void endArray() throws IOException {
+        elementIndices.pop();
+        endScope();
+    }
+
+    /**
+     * Starts the next element of a sequence opened with beginArray.
+     */
+    public void element() throws IOException {
+        arrayIndex(elementIndices.peek()[0]++);
+        nextLine();
+        currentLine.prefix.append(Constants.ARRAY_ELEMENT_PREFIX);
+    }
+
     public void comment(String comment) throws IOException {
         if (comment.indexOf("\n") != -1) {
             String[] lines = comment.split("\n");
@@ -128,11 +247,142 @@ public class YamlWriter implements AutoCloseable {
     }
 
     public void value(JsonObject json) throws IOException {
-        value(json.asMap(), YamlWriter::value);
+        value(json.asMap(), parallelDepth > 0 ? forkingWriter(json.size()) : YamlWriter::value);
     }
 
     public void value(JsonArray json) throws IOException {
-        value(json, YamlWriter::value);
+        if (isFlowSequence(json)) {
+            flowSequence(json.size(), i -> flowScalar(json.get(i)));
+        } else {
+            value(json, parallelDepth > 0 ? forkingWriter(json.size()) : YamlWriter::value);
+        }
+    }
+
+    private IOBiConsumer<YamlWriter, JsonElement> forkingWriter(int size) {
+        int[] remaining = { size };
+        return (writer, value) -> {
+            // the last sibling is written in place so currentLine ends up where it would sequentially
+            if (--remaining[0] == 0 || !(value.isJsonObject() || (value.isJsonArray() && !isFlowSequence(value.getAsJsonArray())))) {
+                // one level deeper, the same as a forked child would be
+                writer.parallelDepth--;
+                try {
+                    writer.value(value);
+                } finally {
+                    writer.parallelDepth++;
+                }
+            } else {
+                YamlWriter child = new YamlWriter(writer);
+                writer.currentLine.deferred = pool.submit(() -> {
+                    child.value(value);
+                    StringWriter buffer = new StringWriter();
+                    writeLines(buffer, child.lines);
+                    return buffer.toString();
+                });
+            }
+        };
+    }
+
+    public void value(@Nullable int[] values) throws IOException {
+        if (values == null) {
+            nullValue();
+        } else {
+            sequence(values.length, true, i -> Integer.toString(values[i]));
+        }
+    }
+
+    public void value(@Nullable long[] values) throws IOException {
+        if (values == null) {
+            nullValue();
+        } else {
+            sequence(values.length, true, i -> Long.toString(values[i]));
+        }
+    }
+
+    public void value(@Nullable double[] values) throws IOException {
+        if (values == null) {
+            nullValue();
+        } else {
+            sequence(values.length, true, i -> formatDouble(values[i]));
+        }
+    }
+
+    public void value(@Nullable boolean[] values) throws IOException {
+        if (values == null) {
+            nullValue();
+        } else {
+            sequence(values.length, false, i -> values[i] ? Constants.TRUE : Constants.FALSE);
+        }
+    }
+
+    private void sequence(int length, boolean numeric, IntFunction<String> elements) throws IOException {
+        if ((flowNumericSequences && numeric) || length <= flowSequenceLimit) {
+            flowSequence(length, elements);
+            return;
+        }
+
+        beginScope();
+        for (int i = 0; i < length; i++) {
+            arrayIndex(i);
+            nextLine();
+            currentLine.prefix.append(Constants.ARRAY_ELEMENT_PREFIX);
+            currentLine.value = elements.apply(i);
+        }
+        endScope();
+    }
+
+    private void flowSequence(int length, IntFunction<String> elements) {
+        StringBuilder builder = new StringBuilder(Constants.ARRAY_START);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                builder.append(Constants.FLOW_ELEMENT_SEPARATOR);
+            }
+            builder.append(elements.apply(i));
+        }
+        currentLine.value = builder.append(Constants.ARRAY_END).toString();
+    }
+
+    private boolean isFlowSequence(JsonArray json) {
+        if (flowSequenceLimit < 0 && !flowNumericSequences) {
+            return false;
+        }
+        boolean numeric = true;
+        for (JsonElement element : json) {
+            if (element.isJsonNull()) {
+                numeric = false;
+            } else if (element instanceof JsonPrimitive primitive) {
+                numeric &= primitive.isNumber();
+            } else {
+                return false;
+            }
+        }
+        return (flowNumericSequences && numeric) || json.size() <= flowSequenceLimit;
+    }
+
+    static String flowScalar(JsonElement element) {
+        if (element instanceof JsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                return primitive.getAsBoolean() ? Constants.TRUE : Constants.FALSE;
+            }
+            if (primitive.isNumber()) {
+                Number number = primitive.getAsNumber();
+                if (number instanceof LazyNumber lazy) {
+                    return lazy.getRawText();
+                }
+                return number instanceof Double || number instanceof Float ? formatDouble(number.doubleValue()) : number.toString();
+            }
+            return Constants.quoteFlowString(primitive.getAsString());
+        }
+        return Constants.NULL;
+    }
+
+    private static String formatDouble(double value) {
+        if (Double.isNaN(value)) {
+            return Constants.NAN;
+        }
+        if (Double.isInfinite(value)) {
+            return value < 0 ? Constants.NEGATIVE_INFINITY : Constants.INFINITY;
+        }
+        return BigDecimal.valueOf(value).toPlainString();
     }
 
     public void value(boolean value) throws IOException {
@@ -147,6 +397,7 @@ public class YamlWriter implements AutoCloseable {
             currentLine.prefix.append(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING);
             for (int i = 0; i < lines.length; i++) {
                 nextLine();
+                currentLine.continuation = true;
                 currentLine.value = lines[i].stripTrailing();
             }
         } else {
@@ -154,6 +405,47 @@ public class YamlWriter implements AutoCloseable {
         }
     }
 
+    /**
+     * Writes text that is already a complete scalar or flow collection, such as a quoted string or [].
+     */
+    void rawValue(String text) {
+        currentLine.value = text;
+    }
+
+    /**
+     * Writes the value as a scalar with its tag, eg. !!binary followed by the base64 of a byte[].
+     */
+    public <V> void value(YamlTag<V> tag, @Nullable V value) throws IOException {
+        if (value == null) {
+            nullValue();
+            return;
+        }
+        StringBuilder text = new StringBuilder(Constants.TYPE_COERSION_INDICATOR).append(tag.name());
+        int start = text.length() + 1;
+        tag.encode(value, text.append(' '));
+        if (text.indexOf("\n", start) == -1) {
+            currentLine.value = text.toString();
+            return;
+        }
+        currentLine.prefix.append(text, 0, start - 1).append(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING);
+        for (String line : text.substring(start).split("\n")) {
+            nextLine();
+            currentLine.continuation = true;
+            currentLine.value = line.stripTrailing();
+        }
+    }
+
+    public void value(@Nullable Reader value) throws IOException {
+        if (value == null) {
+            nullValue();
+        } else {
+            currentLine.prefix.append(Constants.MULTI_LINE_NEWLINE_PRESERVING_STRING);
+            nextLine();
+            currentLine.continuation = true;
+            currentLine.block = value;
+        }
+    }
+
     public void value(Number value) throws IOException {
         if (value == null) {
             nullValue();
@@ -169,17 +461,19 @@ public class YamlWriter implements AutoCloseable {
             value(big.intValueExact());
         } else if (value instanceof BigDecimal big) {
             value(big.intValueExact());
+        } else if (value instanceof LazyNumber lazy) {
+            currentLine.value = lazy.getRawText();
         } else {
             value(value.toString());
         }
     }
 
     public void value(double value) throws IOException {
-        currentLine.value = String.format("%2.d", value);
+        currentLine.value = formatDouble(value);
     }
 
     public void value(float value) throws IOException {
-        currentLine.value = String.format("%2.d", value);
+        currentLine.value = Float.isFinite(value) ? new BigDecimal(Float.toString(value)).toPlainString() : formatDouble(value);
     }
 
     public void value(long value) throws IOException {
@@ -203,7 +497,7 @@ public class YamlWriter implements AutoCloseable {
     }
 
     public void name(String key) throws IOException {
-        if (currentLine.value != null) {
+        if (currentLine.value != null || currentLine.scope != currentScope || currentLine.prefix.length() > 0) {
             nextLine();
         }
         lastKey = key;
@@ -214,17 +508,69 @@ public class YamlWriter implements AutoCloseable {
         lastKey = Integer.toString(i);
     }
 
+    /**
+     * Writes out every completed line when value alignment is disabled.
+     */
+    public void flush() throws IOException {
+        if (!alignValues) {
+            writeHeader();
+            int completed = lines.size() - 1;
+            writeLines(out, lines.subList(0, completed));
+            flushedLines += completed;
+            lines = new ArrayList<>();
+            lines.add(currentLine);
+        }
+        out.flush();
+    }
+
     @Override
     public void close() throws IOException {
-        out.write(Constants.REFERENCE_CARD);
-        out.write("\n");
+        writeHeader();
+        writeLines(out, lines);
+        out.flush();
+        out.close();
+        if (writeEvent != null && counter != null) {
+            writeEvent.end();
+            if (writeEvent.shouldCommit()) {
+                writeEvent.target = target;
+                writeEvent.lines = getLineNumber();
+                writeEvent.characters = counter.getCount();
+                writeEvent.commit();
+            }
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        if (!headerWritten) {
+            headerWritten = true;
+            out.write(Constants.REFERENCE_CARD);
+            out.write("\n");
+        }
+    }
+
+    private static void writeLines(Writer out, List<Line> lines) throws IOException {
         for (Line line : lines) {
             if (line.length() > 0) {
                 line.write(out);
             }
+            if (line.deferred != null) {
+                out.write(await(line.deferred));
+            }
+        }
+    }
+
+    private static String await(ForkJoinTask<String> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
         }
-        out.flush();
-        out.close();
     }
 
     @Override
@@ -239,13 +585,18 @@ public class YamlWriter implements AutoCloseable {
 
         @Nullable String value;
         @Nullable String comment;
+        @Nullable Reader block;
+        @Nullable ForkJoinTask<String> deferred;
+
+        // lines holding the rest of a multi-line value, which must be indented past the key they belong to
+        boolean continuation;
 
         Line(BlockScope scope) {
             this.scope = scope;
         }
 
         int length() {
-            return prefix.length() + (value == null ? 0 : value.length()) + (comment == null ? 0 : comment.length());
+            return prefix.length() + (value == null ? 0 : value.length()) + (comment == null ? 0 : comment.length()) + (block == null ? 0 : 1);
         }
 
         int valueColumn() {
@@ -255,11 +606,19 @@ public class YamlWriter implements AutoCloseable {
             return prefix.length();
         }
 
+        private int valueStartPosition() {
+            return continuation ? Math.max(scope.valueStartPosition, Math.max(1, scope.step)) : scope.valueStartPosition;
+        }
+
         void write(Writer out) throws IOException {
+            if (block != null) {
+                writeBlock(out);
+                return;
+            }
             out.append(scope.indent);
             out.append(prefix);
             if (value != null || comment != null) {
-                for (int i = prefix.length(); i < scope.valueStartPosition; i++) {
+                for (int i = prefix.length(); i < valueStartPosition(); i++) {
                     out.append(' ');
                 }
                 if (value != null) {
@@ -273,6 +632,42 @@ public class YamlWriter implements AutoCloseable {
             }
             out.append('\n');
         }
+
+        private void writeBlock(Writer out) throws IOException {
+            try (Reader in = block) {
+                StringBuilder line = new StringBuilder();
+                char[] chunk = new char[8192];
+                int length;
+                while ((length = in.read(chunk)) != -1) {
+                    int start = 0;
+                    for (int i = 0; i < length; i++) {
+                        if (chunk[i] == '\n') {
+                            line.append(chunk, start, i - start);
+                            writeBlockLine(out, line);
+                            line.setLength(0);
+                            start = i + 1;
+                        }
+                    }
+                    line.append(chunk, start, length - start);
+                }
+                writeBlockLine(out, line);
+            }
+        }
+
+        private void writeBlockLine(Writer out, StringBuilder line) throws IOException {
+            int end = line.length();
+            while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+                end--;
+            }
+            if (end > 0) {
+                out.append(scope.indent);
+                for (int i = 0; i < valueStartPosition(); i++) {
+                    out.append(' ');
+                }
+                out.append(line, 0, end);
+                out.append('\n');
+            }
+        }
     }
 
     static class BlockScope {
@@ -280,6 +675,7 @@ public class YamlWriter implements AutoCloseable {
         final BlockScope parent;
         final String name;
         final String indent;
+        final int step;
         final List<Line> lines = new ArrayList<>();
 
         int valueStartPosition;
@@ -288,6 +684,7 @@ public class YamlWriter implements AutoCloseable {
             this.parent = parent;
             this.name = parent == null ? "" : parent.name + "." + name;
             this.indent = parent == null || parent.parent == null ? "" : parent.indent + indent;
+            this.step = indent.length();
         }
     }
 }
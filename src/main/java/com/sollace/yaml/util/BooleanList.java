@@ -0,0 +1,33 @@
+package com.sollace.yaml.util;
+
+public class BooleanList {
+    private boolean[] values;
+    private int length;
+
+    public BooleanList(int initialLength) {
+        values = new boolean[Math.max(1, initialLength)];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean get(int index) {
+        return values[index];
+    }
+
+    public void add(boolean value) {
+        if (length == values.length) {
+            boolean[] copy = new boolean[values.length * 2];
+            System.arraycopy(values, 0, copy, 0, length);
+            values = copy;
+        }
+        values[length++] = value;
+    }
+
+    public boolean[] toArray() {
+        boolean[] copy = new boolean[length];
+        System.arraycopy(values, 0, copy, 0, length);
+        return copy;
+    }
+}
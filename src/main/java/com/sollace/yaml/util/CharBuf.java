@@ -3,56 +3,127 @@ package com.sollace.yaml.util;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
+import java.util.function.Function;
 
 public class CharBuf implements Closeable {
+    private static final int DEFAULT_CAPACITY = 8192;
+
     private final Reader in;
-    private int readerPosition;
-    private char[] buffer;
-    private int bufferFillLength;
+    private char[] buffer = new char[DEFAULT_CAPACITY];
+    private int position;
+    private int limit;
+    private boolean eof;
+    // characters compacted out of the front of the buffer
+    private long discarded;
+    private long maxLength = Long.MAX_VALUE;
+    private boolean truncated;
+    private Function<String, IOException> errors = IOException::new;
 
     public CharBuf(Reader in) {
         this.in = in;
     }
 
+    /**
+     * Sets how many characters may be read from the stream before reading fails.
+     */
+    public void setMaxLength(long maxLength) {
+        setMaxLength(maxLength, IOException::new);
+    }
+
+    /**
+     * Sets how many characters may be read, with the exception thrown past that made from its message by the owner,
+     * which knows where in the document reading has got to.
+     */
+    public void setMaxLength(long maxLength, Function<String, IOException> errors) {
+        this.maxLength = maxLength;
+        this.errors = errors;
+    }
+
     public boolean ready() throws IOException {
-        if (buffer == null) {
-            return in.ready();
-        }
-        return readerPosition < bufferFillLength;
+        return require(1);
     }
 
-    public char peek(int index) throws IOException {
-        if (buffer == null) {
-            if (!in.ready()) {
-                return '\0';
-            }
+    /**
+     * Makes sure at least one unread character is in the buffer, reading more if needed.
+     * Returns false once the end of the stream has been reached.
+     *
+     * This may compact the buffer, so array() and position() must be re-read after calling it.
+     */
+    public boolean fill() throws IOException {
+        return require(1);
+    }
 
-            buffer = new char[256];
-            bufferFillLength = in.read(buffer);
+    public boolean require(int count) throws IOException {
+        if (limit - position >= count) {
+            return true;
+        }
+        if (eof) {
+            return false;
         }
 
-        if (readerPosition + index >= bufferFillLength) {
-            if (!in.ready()) {
-                return '\0';
-            }
+        // always keep the last consumed character so callers can slice tokens out of the array
+        int keep = Math.min(position, 1);
+        int offset = position - keep;
+        if (offset > 0) {
+            System.arraycopy(buffer, offset, buffer, 0, limit - offset);
+            limit -= offset;
+            position = keep;
+            discarded += offset;
+        }
+        if (position + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(position + count, buffer.length * 2));
+        }
 
-            if (index == 0) {
-                readerPosition = 0;
-                bufferFillLength = in.read(buffer);
-            } else {
-                char[] newBuf = new char[buffer.length * 2];
-                System.arraycopy(buffer, 0, newBuf, 0, bufferFillLength);
-                bufferFillLength += in.read(newBuf, bufferFillLength, newBuf.length - bufferFillLength);
-                buffer = newBuf;
+        while (limit - position < count) {
+            // what was read past the limit is dropped, so the error is only raised once the owner has consumed
+            // everything up to it and can say where in the document that is
+            if (truncated) {
+                throw errors.apply("Document exceeds the limit of " + maxLength + " characters");
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+                return false;
+            }
+            limit += read;
+            if (discarded + limit > maxLength) {
+                limit = (int)(maxLength - discarded);
+                truncated = true;
             }
         }
-        return buffer[readerPosition + index];
+        return true;
+    }
+
+    public char[] array() {
+        return buffer;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of characters consumed since the start of the stream.
+     */
+    public long offset() {
+        return discarded + position;
+    }
+
+    public void skip(int count) {
+        position = Math.min(limit, position + count);
+    }
+
+    public char peek(int index) throws IOException {
+        return require(index + 1) ? buffer[position + index] : '\0';
     }
 
     public char read() throws IOException {
-        char c = peek(0);
-        readerPosition++;
-        return c;
+        return require(1) ? buffer[position++] : '\0';
     }
 
     @Override
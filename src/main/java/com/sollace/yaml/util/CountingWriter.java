@@ -0,0 +1,35 @@
+package com.sollace.yaml.util;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+public class CountingWriter extends FilterWriter {
+    private long count;
+
+    public CountingWriter(Writer out) {
+        super(out);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(c);
+        count++;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        out.write(cbuf, off, len);
+        count += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        out.write(str, off, len);
+        count += len;
+    }
+}
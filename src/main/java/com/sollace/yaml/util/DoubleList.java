@@ -0,0 +1,33 @@
+package com.sollace.yaml.util;
+
+public class DoubleList {
+    private double[] values;
+    private int length;
+
+    public DoubleList(int initialLength) {
+        values = new double[Math.max(1, initialLength)];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public double get(int index) {
+        return values[index];
+    }
+
+    public void add(double value) {
+        if (length == values.length) {
+            double[] copy = new double[values.length * 2];
+            System.arraycopy(values, 0, copy, 0, length);
+            values = copy;
+        }
+        values[length++] = value;
+    }
+
+    public double[] toArray() {
+        double[] copy = new double[length];
+        System.arraycopy(values, 0, copy, 0, length);
+        return copy;
+    }
+}
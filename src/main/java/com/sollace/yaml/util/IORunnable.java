@@ -0,0 +1,8 @@
+package com.sollace.yaml.util;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface IORunnable {
+    void run() throws IOException;
+}
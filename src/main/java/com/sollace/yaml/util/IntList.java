@@ -0,0 +1,33 @@
+package com.sollace.yaml.util;
+
+public class IntList {
+    private int[] values;
+    private int length;
+
+    public IntList(int initialLength) {
+        values = new int[Math.max(1, initialLength)];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public void add(int value) {
+        if (length == values.length) {
+            int[] copy = new int[values.length * 2];
+            System.arraycopy(values, 0, copy, 0, length);
+            values = copy;
+        }
+        values[length++] = value;
+    }
+
+    public int[] toArray() {
+        int[] copy = new int[length];
+        System.arraycopy(values, 0, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,33 @@
+package com.sollace.yaml.util;
+
+public class LongList {
+    private long[] values;
+    private int length;
+
+    public LongList(int initialLength) {
+        values = new long[Math.max(1, initialLength)];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public long get(int index) {
+        return values[index];
+    }
+
+    public void add(long value) {
+        if (length == values.length) {
+            long[] copy = new long[values.length * 2];
+            System.arraycopy(values, 0, copy, 0, length);
+            values = copy;
+        }
+        values[length++] = value;
+    }
+
+    public long[] toArray() {
+        long[] copy = new long[length];
+        System.arraycopy(values, 0, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,66 @@
+package com.sollace.yaml.util;
+
+import java.io.IOException;
+
+public class TrimmingAppendable implements Appendable {
+    private final Appendable out;
+    private final StringBuilder pendingWhitespace = new StringBuilder();
+
+    private boolean started;
+
+    public TrimmingAppendable(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        if (c <= ' ') {
+            if (started) {
+                pendingWhitespace.append(c);
+            }
+            return this;
+        }
+        flushWhitespace();
+        started = true;
+        out.append(c);
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        int last = end - 1;
+        while (last >= start && csq.charAt(last) <= ' ') {
+            last--;
+        }
+
+        if (last < start) {
+            if (started) {
+                pendingWhitespace.append(csq, start, end);
+            }
+            return this;
+        }
+
+        if (!started) {
+            while (csq.charAt(start) <= ' ') {
+                start++;
+            }
+            started = true;
+        }
+        flushWhitespace();
+        out.append(csq, start, last + 1);
+        pendingWhitespace.append(csq, last + 1, end);
+        return this;
+    }
+
+    private void flushWhitespace() throws IOException {
+        if (!pendingWhitespace.isEmpty()) {
+            out.append(pendingWhitespace);
+            pendingWhitespace.setLength(0);
+        }
+    }
+}
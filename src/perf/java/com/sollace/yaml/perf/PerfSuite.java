@@ -0,0 +1,376 @@
+package com.sollace.yaml.perf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sollace.yaml.YamlReader;
+import com.sollace.yaml.YamlWriter;
+
+/**
+ * Runs YamlReader and YamlWriter over generated documents and records throughput, peak heap and allocation.
+ *
+ * Throughput is compared against the baseline relative to how fast Gson parses the mixed document as json, timed alongside
+ * each measurement, so a baseline recorded on one machine still holds on a faster or slower one. Allocation and entry counts
+ * don't depend on the machine and are compared as they are.
+ *
+ * Arguments:
+ *   --sizes 1KB,1MB,...     document sizes to generate (KB, MB and GB suffixes)
+ *   --work-dir dir          where generated documents are cached
+ *   --report file           where to write the json report
+ *   --baseline file         results to compare against, which must exist unless the baseline is being updated
+ *   --tolerance 0.25        allowed relative regression before the run fails
+ *   --update-baseline       replace the baseline with this run's results
+ */
+public class PerfSuite {
+    private static final long SEED = 0x5EED_CAFEL;
+    // documents above this size are written with alignment off and flushed per entry so they don't need to fit in memory
+    private static final long STREAMED_WRITE_THRESHOLD = 64L << 20;
+    // peak heap readings are noisy, so only growth beyond this is treated as a regression
+    private static final long HEAP_NOISE = 16L << 20;
+    private static final long REFERENCE_SIZE = 1L << 20;
+    private static final int REFERENCE_ITERATIONS = 5;
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseArgs(args);
+        List<Long> sizes = parseSizes(options.getOrDefault("sizes", "1KB,64KB,1MB,16MB"));
+        Path workDir = Path.of(options.getOrDefault("work-dir", "build/perf"));
+        Path report = Path.of(options.getOrDefault("report", "build/reports/perf/perf-report.json"));
+        Path baseline = Path.of(options.getOrDefault("baseline", "src/perf/baseline.json"));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "0.25"));
+
+        Files.createDirectories(workDir);
+        Reference reference = createReference(workDir);
+
+        JsonArray results = new JsonArray();
+        for (YamlGenerator.Shape shape : YamlGenerator.Shape.values()) {
+            for (long size : sizes) {
+                Path document = workDir.resolve(documentName(shape, size));
+                long bytes = generate(document, shape, size);
+                int iterations = bytes < (16L << 20) ? 5 : 1;
+
+                results.add(measure(shape, size, bytes, "read", iterations, reference, stopwatch -> read(document, stopwatch)));
+                if (bytes > STREAMED_WRITE_THRESHOLD) {
+                    results.add(measure(shape, size, bytes, "write", iterations, reference, stopwatch -> writeStreamed(document, stopwatch)));
+                } else {
+                    JsonObject tree = readTree(document);
+                    results.add(measure(shape, size, bytes, "write", iterations, reference, stopwatch -> write(tree, stopwatch)));
+                }
+            }
+        }
+
+        JsonObject run = new JsonObject();
+        run.addProperty("timestamp", Instant.now().toString());
+        run.addProperty("java", System.getProperty("java.version"));
+        run.addProperty("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        run.add("results", results);
+
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        Files.writeString(report, GSON.toJson(run));
+        System.out.println("Wrote report to " + report);
+
+        if (options.containsKey("update-baseline")) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.writeString(baseline, GSON.toJson(run));
+            System.out.println("Recorded baseline at " + baseline);
+            return;
+        }
+        if (!Files.exists(baseline)) {
+            System.err.println("No baseline at " + baseline + ", run with --update-baseline to record one");
+            System.exit(1);
+        }
+
+        List<String> regressions = compare(JsonParser.parseString(Files.readString(baseline)).getAsJsonObject(), run, tolerance);
+        if (!regressions.isEmpty()) {
+            regressions.forEach(System.err::println);
+            System.err.println(regressions.size() + " regression(s) against " + baseline);
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + baseline);
+    }
+
+    private static String documentName(YamlGenerator.Shape shape, long size) {
+        return String.format(Locale.ROOT, "%s-%s-v%d-%x.yaml", shape.id(), formatSize(size), YamlGenerator.VERSION, SEED);
+    }
+
+    private static Reference createReference(Path workDir) throws IOException {
+        Path document = workDir.resolve(documentName(YamlGenerator.Shape.MIXED, REFERENCE_SIZE));
+        generate(document, YamlGenerator.Shape.MIXED, REFERENCE_SIZE);
+        Reference reference = new Reference(readTree(document).toString());
+        // warm up so the first measurement isn't compared against the interpreter
+        reference.time();
+        return reference;
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return (bytes / (double)(1 << 20)) / (nanos / 1e9);
+    }
+
+    private static long generate(Path document, YamlGenerator.Shape shape, long size) throws IOException {
+        if (Files.exists(document)) {
+            return Files.size(document);
+        }
+        try (Writer out = Files.newBufferedWriter(document)) {
+            return new YamlGenerator(shape, SEED).generate(out, size);
+        }
+    }
+
+    private static int read(Path document, Stopwatch stopwatch) throws IOException {
+        int[] entries = {0};
+        stopwatch.start();
+        try (YamlReader reader = new YamlReader(Files.newBufferedReader(document))) {
+            reader.readDocumentEntries((key, value) -> entries[0]++);
+        }
+        stopwatch.stop();
+        return entries[0];
+    }
+
+    private static JsonObject readTree(Path document) throws IOException {
+        try (YamlReader reader = new YamlReader(Files.newBufferedReader(document))) {
+            return reader.readDocument();
+        }
+    }
+
+    private static int write(JsonObject tree, Stopwatch stopwatch) throws IOException {
+        stopwatch.start();
+        try (YamlWriter writer = new YamlWriter(Writer.nullWriter())) {
+            writer.value(tree);
+        }
+        stopwatch.stop();
+        return tree.size();
+    }
+
+    // the document is read one entry at a time with the stopwatch stopped, as it is too large to read into a tree up front
+    private static int writeStreamed(Path document, Stopwatch stopwatch) throws IOException {
+        int[] entries = {0};
+        try (YamlReader reader = new YamlReader(Files.newBufferedReader(document));
+                YamlWriter writer = new YamlWriter(Writer.nullWriter())) {
+            writer.setAlignValues(false);
+            writer.beginObject();
+            reader.readDocumentEntries((key, value) -> {
+                entries[0]++;
+                stopwatch.start();
+                writer.name(key);
+                writer.value(value);
+                writer.flush();
+                stopwatch.stop();
+            });
+            writer.endObject();
+        }
+        return entries[0];
+    }
+
+    private static JsonObject measure(YamlGenerator.Shape shape, long size, long bytes, String operation, int iterations, Reference reference, Task task) throws IOException {
+        if (iterations > 1) {
+            // warm up so small documents aren't measured against the interpreter
+            task.run(new Stopwatch());
+        }
+        int entries = 0;
+        long bestNanos = Long.MAX_VALUE;
+        long allocated = 0;
+        long peakHeap = 0;
+        long referenceNanos = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            System.gc();
+            resetPeakHeap();
+            long allocatedBefore = allocatedBytes();
+            Stopwatch stopwatch = new Stopwatch();
+            entries = task.run(stopwatch);
+            bestNanos = Math.min(bestNanos, stopwatch.nanos);
+            allocated = allocatedBytes() - allocatedBefore;
+            peakHeap = Math.max(peakHeap, peakHeap());
+            referenceNanos = Math.min(referenceNanos, reference.time());
+        }
+        for (int i = iterations; i < REFERENCE_ITERATIONS; i++) {
+            referenceNanos = Math.min(referenceNanos, reference.time());
+        }
+        double referenceThroughput = throughput(reference.json.length(), referenceNanos);
+
+        JsonObject result = new JsonObject();
+        result.addProperty("shape", shape.id());
+        result.addProperty("size", formatSize(size));
+        result.addProperty("operation", operation);
+        result.addProperty("bytes", bytes);
+        result.addProperty("entries", entries);
+        result.addProperty("iterations", iterations);
+        result.addProperty("bestMillis", bestNanos / 1_000_000D);
+        result.addProperty("mbPerSecond", throughput(bytes, bestNanos));
+        result.addProperty("referenceMbPerSecond", referenceThroughput);
+        result.addProperty("relativeThroughput", throughput(bytes, bestNanos) / referenceThroughput);
+        result.addProperty("peakHeapBytes", peakHeap);
+        result.addProperty("allocatedBytes", allocated);
+        result.addProperty("allocatedBytesPerInputByte", allocated / (double)Math.max(1, bytes));
+        System.out.println(String.format(Locale.ROOT, "%-14s %6s %-5s %10.2f MB/s %6.3fx ref %8d MB peak %8.1f B/B allocated",
+                shape.id(), formatSize(size), operation, result.get("mbPerSecond").getAsDouble(), result.get("relativeThroughput").getAsDouble(),
+                peakHeap >> 20, result.get("allocatedBytesPerInputByte").getAsDouble()));
+        return result;
+    }
+
+    static List<String> compare(JsonObject baseline, JsonObject run, double tolerance) {
+        Map<String, JsonObject> previous = new HashMap<>();
+        for (JsonElement element : baseline.getAsJsonArray("results")) {
+            previous.put(key(element.getAsJsonObject()), element.getAsJsonObject());
+        }
+
+        List<String> regressions = new ArrayList<>();
+        for (JsonElement element : run.getAsJsonArray("results")) {
+            JsonObject current = element.getAsJsonObject();
+            JsonObject base = previous.get(key(current));
+            if (base == null) {
+                continue;
+            }
+            // a document that stopped parsing early would otherwise show up as a speedup
+            if (base.has("entries") && current.get("entries").getAsInt() != base.get("entries").getAsInt()) {
+                regressions.add(String.format(Locale.ROOT, "%s: read %d entries, baseline %d entries", key(current), current.get("entries").getAsInt(), base.get("entries").getAsInt()));
+            }
+            // absolute throughput only means something on the machine that recorded it
+            if (!base.has("relativeThroughput")) {
+                regressions.add(key(current) + ": baseline only has absolute throughput, record it again with --update-baseline");
+                continue;
+            }
+            double throughput = current.get("relativeThroughput").getAsDouble();
+            double baseThroughput = base.get("relativeThroughput").getAsDouble();
+            if (throughput < baseThroughput * (1 - tolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s: throughput %.3fx the reference is below baseline %.3fx", key(current), throughput, baseThroughput));
+            }
+            long allocated = current.get("allocatedBytes").getAsLong();
+            long baseAllocated = base.get("allocatedBytes").getAsLong();
+            if (allocated > baseAllocated * (1 + tolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s: allocated %d bytes, baseline %d bytes", key(current), allocated, baseAllocated));
+            }
+            long heap = current.get("peakHeapBytes").getAsLong();
+            long baseHeap = base.get("peakHeapBytes").getAsLong();
+            if (heap > baseHeap * (1 + tolerance) + HEAP_NOISE) {
+                regressions.add(String.format(Locale.ROOT, "%s: peak heap %d MB, baseline %d MB", key(current), heap >> 20, baseHeap >> 20));
+            }
+        }
+        return regressions;
+    }
+
+    private interface Task {
+        /**
+         * Runs the operation once, with the stopwatch running only around the part being measured.
+         * Allocation is counted for the whole run.
+         *
+         * @return the number of top-level entries processed
+         */
+        int run(Stopwatch stopwatch) throws IOException;
+    }
+
+    /**
+     * Gson parsing the mixed document written out as json, which does the same kind of work as the reader and
+     * speeds up and slows down with the machine the same way.
+     */
+    private static final class Reference {
+        private final String json;
+
+        Reference(String json) {
+            this.json = json;
+        }
+
+        long time() {
+            long started = System.nanoTime();
+            JsonParser.parseString(json);
+            return System.nanoTime() - started;
+        }
+    }
+
+    private static final class Stopwatch {
+        private long nanos;
+        private long started;
+
+        void start() {
+            started = System.nanoTime();
+        }
+
+        void stop() {
+            nanos += System.nanoTime() - started;
+        }
+    }
+
+    private static String key(JsonObject result) {
+        return result.get("shape").getAsString() + "/" + result.get("size").getAsString() + "/" + result.get("operation").getAsString();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "true");
+            }
+        }
+        return options;
+    }
+
+    static List<Long> parseSizes(String sizes) {
+        List<Long> parsed = new ArrayList<>();
+        for (String size : sizes.split(",")) {
+            String s = size.trim().toUpperCase(Locale.ROOT);
+            long unit = s.endsWith("GB") ? 1L << 30 : s.endsWith("MB") ? 1L << 20 : s.endsWith("KB") ? 1L << 10 : 1;
+            parsed.add(Long.parseLong(unit == 1 ? s : s.substring(0, s.length() - 2)) * unit);
+        }
+        return parsed;
+    }
+
+    static String formatSize(long size) {
+        if (size >= 1L << 30 && size % (1L << 30) == 0) {
+            return (size >> 30) + "GB";
+        }
+        if (size >= 1L << 20 && size % (1L << 20) == 0) {
+            return (size >> 20) + "MB";
+        }
+        if (size >= 1L << 10 && size % (1L << 10) == 0) {
+            return (size >> 10) + "KB";
+        }
+        return Long.toString(size);
+    }
+}
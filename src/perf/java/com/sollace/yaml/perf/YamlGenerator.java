@@ -0,0 +1,160 @@
+package com.sollace.yaml.perf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Writes synthetic yaml documents of a requested size.
+ *
+ * The same shape, size and seed always produce the same document. Documents are made of top-level entries
+ * so that the largest sizes can still be read one entry at a time.
+ */
+public class YamlGenerator {
+    /**
+     * Changes whenever the document generated for a shape, size and seed changes, so that cached copies of older ones aren't reused.
+     */
+    public static final int VERSION = 1;
+
+    private static final String[] WORDS = {
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet",
+            "kilo", "lima", "mike", "november", "oscar", "papa", "quebec", "romeo", "sierra", "tango"
+    };
+
+    public enum Shape {
+        WIDE_MAP,
+        DEEP_NESTING,
+        LONG_SEQUENCE,
+        BLOCK_SCALARS,
+        QUOTED,
+        MIXED;
+
+        public String id() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Shape shape;
+    private final long seed;
+
+    private int nestingDepth = 32;
+
+    public YamlGenerator(Shape shape, long seed) {
+        this.shape = shape;
+        this.seed = seed;
+    }
+
+    public YamlGenerator setNestingDepth(int depth) {
+        nestingDepth = depth;
+        return this;
+    }
+
+    /**
+     * Writes whole top-level entries until at least targetBytes characters have been written.
+     * Generated documents only contain ascii, so characters and bytes are the same.
+     *
+     * @return the number of characters written
+     */
+    public long generate(Writer out, long targetBytes) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder chunk = new StringBuilder(8192);
+        long written = 0;
+        for (int entry = 0; written < targetBytes; entry++) {
+            chunk.setLength(0);
+            Shape shape = this.shape == Shape.MIXED ? Shape.values()[random.nextInt(Shape.MIXED.ordinal())] : this.shape;
+            switch (shape) {
+                case WIDE_MAP -> wideMap(chunk, entry, random);
+                case DEEP_NESTING -> deepNesting(chunk, entry, random);
+                case LONG_SEQUENCE -> longSequence(chunk, entry, random);
+                case BLOCK_SCALARS -> blockScalar(chunk, entry, random);
+                default -> quoted(chunk, entry, random);
+            }
+            out.append(chunk);
+            written += chunk.length();
+        }
+        out.flush();
+        return written;
+    }
+
+    private void wideMap(StringBuilder out, int entry, SplittableRandom random) {
+        out.append("wide_").append(entry).append(":\n");
+        for (int i = 0; i < 200; i++) {
+            out.append("  key_").append(i).append(": ");
+            scalar(out, random);
+            out.append('\n');
+        }
+    }
+
+    private void deepNesting(StringBuilder out, int entry, SplittableRandom random) {
+        out.append("deep_").append(entry).append(":\n");
+        for (int level = 1; level <= nestingDepth; level++) {
+            indent(out, level).append("value_").append(level).append(": ");
+            scalar(out, random);
+            out.append('\n');
+            indent(out, level).append("level_").append(level).append(":\n");
+        }
+        indent(out, nestingDepth + 1).append("leaf: ");
+        scalar(out, random);
+        out.append('\n');
+    }
+
+    private void longSequence(StringBuilder out, int entry, SplittableRandom random) {
+        out.append("sequence_").append(entry).append(":\n");
+        for (int i = 0; i < 500; i++) {
+            out.append("  - ");
+            scalar(out, random);
+            out.append('\n');
+        }
+    }
+
+    private void blockScalar(StringBuilder out, int entry, SplittableRandom random) {
+        out.append("block_").append(entry).append(": |\n");
+        for (int line = 0; line < 50; line++) {
+            out.append("  ");
+            for (int i = 0, words = 4 + random.nextInt(12); i < words; i++) {
+                if (i > 0) {
+                    out.append(' ');
+                }
+                out.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            out.append('\n');
+        }
+    }
+
+    private void quoted(StringBuilder out, int entry, SplittableRandom random) {
+        out.append("quoted_").append(entry).append(":\n");
+        for (int i = 0; i < 100; i++) {
+            out.append("  quoted_key_").append(i).append(": ");
+            switch (random.nextInt(3)) {
+                case 0 -> out.append("\"").append(word(random)).append(" \\\"").append(word(random)).append("\\\" ").append(word(random)).append('"');
+                case 1 -> out.append("\"").append(word(random)).append(" \\t ").append(word(random)).append(" \\n ").append(word(random)).append('"');
+                default -> out.append('\'').append(word(random)).append(": ").append(word(random)).append(" # ").append(word(random)).append('\'');
+            }
+            out.append('\n');
+        }
+    }
+
+    private static void scalar(StringBuilder out, SplittableRandom random) {
+        switch (random.nextInt(8)) {
+            case 0 -> out.append(random.nextInt());
+            case 1 -> out.append(random.nextLong());
+            case 2 -> out.append(random.nextDouble());
+            case 3 -> out.append("0x").append(Integer.toHexString(random.nextInt(1 << 24)));
+            case 4 -> out.append(random.nextBoolean() ? "true" : "false");
+            case 5 -> out.append("null");
+            default -> out.append(word(random)).append(' ').append(word(random));
+        }
+    }
+
+    private static String word(SplittableRandom random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static StringBuilder indent(StringBuilder out, int level) {
+        for (int i = 0; i < level; i++) {
+            out.append("  ");
+        }
+        return out;
+    }
+}